@@ -0,0 +1,80 @@
+package nl.han.ica.icss.benchmark;
+
+import nl.han.ica.icss.CompilationResult;
+import nl.han.ica.icss.Compiler;
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.BinaryAST;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares loading a checked AST from the BinaryAST format with what it replaces: parsing
+ * and checking the source again with the Compiler. Parsing alone is measured as well.
+ *
+ *   mvn -Pbenchmark compile exec:exec -Djmh.args="BinaryASTBenchmark -p sheet=10k -prof gc"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BinaryASTBenchmark {
+
+    private static final Compiler COMPILER = new Compiler();
+
+    @State(Scope.Benchmark)
+    public static class Input {
+        @Param({"level3", "1k", "10k"})
+        public String sheet;
+
+        public String text;
+        public AST checked;
+        public byte[] binary;
+
+        @Setup(Level.Trial)
+        public void load() {
+            text = Stylesheets.load(sheet);
+            CompilationResult result = COMPILER.parse(text);
+            if (!COMPILER.check(result)) {
+                throw new IllegalStateException("Benchmark input does not check: " + result.getErrors());
+            }
+            checked = result.getAST();
+            binary = BinaryAST.write(checked);
+        }
+    }
+
+    @Benchmark
+    public AST parse(Input input) {
+        return COMPILER.parse(input.text).getAST();
+    }
+
+    @Benchmark
+    public AST parseAndCheck(Input input) {
+        CompilationResult result = COMPILER.parse(input.text);
+        COMPILER.check(result);
+        return result.getAST();
+    }
+
+    @Benchmark
+    public AST read(Input input) throws IOException {
+        return BinaryAST.read(input.binary);
+    }
+
+    @Benchmark
+    public byte[] write(Input input) {
+        return BinaryAST.write(input.checked);
+    }
+}
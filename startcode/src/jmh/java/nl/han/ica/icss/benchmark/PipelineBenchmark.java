@@ -0,0 +1,173 @@
+package nl.han.ica.icss.benchmark;
+
+import nl.han.ica.icss.CompilationResult;
+import nl.han.ica.icss.Compiler;
+import nl.han.ica.icss.IncrementalParser;
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.checker.Checker;
+import nl.han.ica.icss.generator.Generator;
+import nl.han.ica.icss.transforms.ConstantFolder;
+import nl.han.ica.icss.transforms.Evaluator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures every Compiler stage separately and end-to-end. Run with the gc profiler
+ * (the default of the benchmark profile) to get the allocation rate per stage.
+ * The IncrementalParser of the GUI is measured apart, for a first parse and for a reparse
+ * after one edited statement:
+ *
+ *   mvn -Pbenchmark compile exec:exec -Djmh.args="PipelineBenchmark -p sheet=10k -prof gc"
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PipelineBenchmark {
+
+    private static final Compiler COMPILER = new Compiler();
+    private static final Compiler PARSE_TREE_COMPILER = new Compiler(Compiler.ParseMode.PARSE_TREE);
+
+    @State(Scope.Benchmark)
+    public static class Input {
+        @Param({"level0", "level1", "level2", "level3", "1k", "10k", "100k"})
+        public String sheet;
+
+        public String text;
+
+        @Setup(Level.Trial)
+        public void load() {
+            text = Stylesheets.load(sheet);
+        }
+    }
+
+    // een parser die de invoer al kent; elke reparse wisselt tussen twee versies van het laatste statement
+    @State(Scope.Thread)
+    public static class Edited {
+        public IncrementalParser parser;
+        public String[] versions;
+        public int next;
+
+        @Setup(Level.Trial)
+        public void parse(Input input) {
+            versions = new String[] {
+                    input.text + "\nEditedWidth := 1px;\n",
+                    input.text + "\nEditedWidth := 2px;\n"
+            };
+            parser = new IncrementalParser(COMPILER);
+            parser.parse(versions[0]);
+            next = 1;
+        }
+    }
+
+    // een geparseerde AST; checken en genereren passen de structuur niet aan
+    @State(Scope.Thread)
+    public static class Parsed {
+        public AST ast;
+
+        @Setup(Level.Trial)
+        public void parse(Input input) {
+            ast = parseText(input.text);
+        }
+    }
+
+    // de Evaluator laat de AST ongewijzigd, dus één gecheckte AST is genoeg
+    @State(Scope.Thread)
+    public static class Checked {
+        public AST ast;
+
+        @Setup(Level.Trial)
+        public void parseAndCheck(Input input) {
+            // zoals de Compiler: na een geslaagde check wordt de AST gevouwen
+            ast = parseText(input.text);
+            new Checker().check(ast);
+            new ConstantFolder().apply(ast);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Transformed {
+        public AST ast;
+
+        @Setup(Level.Trial)
+        public void transform(Input input) {
+            ast = parseText(input.text);
+            new Checker().check(ast);
+            ast = new Evaluator().evaluate(ast);
+        }
+    }
+
+    @Benchmark
+    public AST parse(Input input) {
+        return parseText(input.text);
+    }
+
+    @Benchmark
+    public AST parseWithParseTree(Input input) {
+        // de oude route: eerst de volledige ANTLR parse tree, dan de ASTListener
+        return PARSE_TREE_COMPILER.parse(input.text).getAST();
+    }
+
+    @Benchmark
+    public AST parseIncremental(Input input) {
+        // een eerste parse: elk statement apart, zonder iets te hergebruiken
+        return new IncrementalParser(COMPILER).parse(input.text).getAST();
+    }
+
+    @Benchmark
+    public AST reparseIncremental(Edited edited) {
+        AST ast = edited.parser.parse(edited.versions[edited.next]).getAST();
+        edited.next = 1 - edited.next;
+        return ast;
+    }
+
+    @Benchmark
+    public AST check(Parsed parsed) {
+        new Checker().check(parsed.ast);
+        return parsed.ast;
+    }
+
+    @Benchmark
+    public AST transform(Checked checked) {
+        return new Evaluator().evaluate(checked.ast);
+    }
+
+    @Benchmark
+    public String generate(Transformed transformed) {
+        return new Generator().generate(transformed.ast);
+    }
+
+    @Benchmark
+    public void generateStreaming(Transformed transformed) throws IOException {
+        // schrijft naar een Writer zonder de volledige CSS-string op te bouwen
+        new Generator().generate(transformed.ast, Writer.nullWriter());
+    }
+
+    @Benchmark
+    public String endToEnd(Input input) {
+        return COMPILER.compile(input.text).getCss();
+    }
+
+    private static AST parseText(String text) {
+        CompilationResult result = COMPILER.parse(text);
+        if (!result.isParsed()) {
+            throw new IllegalStateException("Benchmark input does not parse: " + result.getErrors());
+        }
+        return result.getAST();
+    }
+}
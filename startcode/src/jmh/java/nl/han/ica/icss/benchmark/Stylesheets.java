@@ -0,0 +1,87 @@
+package nl.han.ica.icss.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Inputs for the benchmarks: the level0-level3 example files and synthetic stylesheets
+ * with a given number of rules.
+ */
+public class Stylesheets {
+
+    // aantal globale variabelen per soort in een synthetische stylesheet
+    private static final int GLOBALS = 16;
+
+    /**
+     * Loads a benchmark input by name.
+     * @param name level0 t/m level3, or a rule count such as 1k, 10k or 100k
+     * @return the ICSS source text
+     */
+    public static String load(String name) {
+        if (name.startsWith("level")) {
+            return resource(name + ".icss");
+        }
+        int rules = name.endsWith("k")
+                ? Integer.parseInt(name.substring(0, name.length() - 1)) * 1000
+                : Integer.parseInt(name);
+        return synthetic(rules);
+    }
+
+    /**
+     * Generates a valid (checker-approved) stylesheet that uses every language feature:
+     * global variables, local assignments, arithmetic and nested if/else clauses.
+     * @param rules number of stylerules
+     * @return the ICSS source text
+     */
+    public static String synthetic(int rules) {
+        StringBuilder sb = new StringBuilder(rules * 160);
+        // globale variabelen van elk type
+        for (int i = 0; i < GLOBALS; i++) {
+            sb.append("Width").append(i).append(" := ").append(100 + i * 10).append("px;\n");
+            sb.append("Color").append(i).append(" := #").append(hex(i * 0x0f0f0f)).append(";\n");
+            sb.append("Flag").append(i).append(" := ").append(i % 2 == 0 ? "TRUE" : "FALSE").append(";\n");
+        }
+        for (int i = 0; i < rules; i++) {
+            int g = i % GLOBALS;
+            // wissel af tussen tag-, class- en id-selectors
+            switch (i % 3) {
+                case 0: sb.append("p"); break;
+                case 1: sb.append(".rule").append(i); break;
+                default: sb.append("#rule").append(i); break;
+            }
+            sb.append(" {\n");
+            sb.append("\tLocal := ").append(i % 50).append("px;\n");
+            sb.append("\twidth: Width").append(g).append(" + ").append(i % 20).append("px;\n");
+            sb.append("\tcolor: Color").append(g).append(";\n");
+            sb.append("\theight: 2 * Local + 10px - 3px;\n");
+            sb.append("\tif[Flag").append(g).append("] {\n");
+            sb.append("\t\tbackground-color: #").append(hex(i * 7919)).append(";\n");
+            sb.append("\t\tif[Flag").append((g + 1) % GLOBALS).append("] {\n");
+            sb.append("\t\t\theight: 50%;\n");
+            sb.append("\t\t}\n");
+            sb.append("\t} else {\n");
+            sb.append("\t\tbackground-color: Color").append((g + 3) % GLOBALS).append(";\n");
+            sb.append("\t}\n");
+            sb.append("}\n");
+        }
+        return sb.toString();
+    }
+
+    private static String hex(int value) {
+        String hex = Integer.toHexString(value & 0xffffff);
+        return "000000".substring(hex.length()) + hex;
+    }
+
+    private static String resource(String name) {
+        try (InputStream in = Stylesheets.class.getClassLoader().getResourceAsStream(name)) {
+            if (in == null) {
+                throw new IllegalArgumentException("Unknown benchmark input: " + name);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -1,5 +1,20 @@
 grammar ICSS;
 
+@parser::members {
+    // een kleur met alpha: # en precies acht hexadecimale cijfers, zonder regex omdat dit tijdens de voorspelling draait
+    static boolean isHexColor(String text) {
+        if (text.length() != 9 || text.charAt(0) != '#') {
+            return false;
+        }
+        for (int i = 1; i < text.length(); i++) {
+            if (Character.digit(text.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
+
 //--- LEXER: ---
 
 // IF support:
@@ -8,6 +23,11 @@ ELSE: 'else';
 BOX_BRACKET_OPEN: '[';
 BOX_BRACKET_CLOSE: ']';
 
+// Import support:
+IMPORT: '@import';
+//The path of an import, between double quotes
+STRING: '"' ~["\r\n]* '"';
+
 
 //Literals
 TRUE: 'TRUE';
@@ -18,10 +38,12 @@ SCALAR: [0-9]+;
 
 
 //Color value takes precedence over id idents
-COLOR: '#' [0-9a-f] [0-9a-f] [0-9a-f] [0-9a-f] [0-9a-f] [0-9a-f];
+COLOR: '#' HEX HEX HEX HEX HEX HEX;
+fragment HEX: [0-9a-fA-F];
 
 //Specific identifiers for id's and css classes
-ID_IDENT: '#' [a-z0-9\-]+;
+//A color with an alpha channel (eight hex digits) is also an id ident, see colorLiteral
+ID_IDENT: '#' [a-zA-Z0-9\-]+;
 CLASS_IDENT: '.' [a-z0-9\-]+;
 
 //General identifiers
@@ -45,8 +67,11 @@ ASSIGNMENT_OPERATOR: ':=';
 
 
 //--- PARSER: ---
-  // Stylesheet bevat meerdere assignments, stylrules of ifClauses
-  stylesheet: (assignment | stylerule | ifClause)*;
+  // Stylesheet bevat imports en daarna meerdere assignments, stylrules of ifClauses
+  // Imports staan altijd bovenaan, voor de andere statements
+  stylesheet: importDirective* (assignment | stylerule | ifClause)*;
+  // Import verwacht in volgorde: IMPORT, STRING, SEMICOLON
+  importDirective: IMPORT STRING SEMICOLON;
   // Assignment verwacht in volgorde: CAPITAL_IDENT, ASSIGNMENT_OPERATOR, expression, SEMICOLON
   assignment: CAPITAL_IDENT ASSIGNMENT_OPERATOR expression SEMICOLON;
   // Stylerule verwacht in volgorde: selector, OPEN_BRACE, (declaration | assignment | ifClause)*, CLOSE_BRACE
@@ -79,7 +104,8 @@ ASSIGNMENT_OPERATOR: ':=';
     | expression PLUS expression #addExpression
     | expression MIN expression #subExpression
     // Definities voor verschillende soorten literals en variabele referenties
-    | COLOR #colorLiteral
+    // Een kleur met alpha (#rrggbbaa) wordt als ID_IDENT gelezen, zodat #deadbeef ook een selector kan zijn
+    | (COLOR | {isHexColor(_input.LT(1).getText())}? ID_IDENT) #colorLiteral
     | PIXELSIZE #pixelLiteral
     | PERCENTAGE #percentageLiteral
     | SCALAR #scalarLiteral
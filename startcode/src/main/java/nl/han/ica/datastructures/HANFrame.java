@@ -0,0 +1,39 @@
+package nl.han.ica.datastructures;
+
+public class HANFrame<T> implements IHANFrame<T> {
+    private final IHANFrame<T> parent;
+    private final Object[] values;
+
+    public HANFrame(int size) {
+        this(null, size);
+    }
+
+    public HANFrame(IHANFrame<T> parent, int size) {
+        this.parent = parent;
+        this.values = new Object[size];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int depth, int slot) {
+        if (depth == 0) {
+            return (T) values[slot];
+        }
+        // loop omhoog naar het frame waar de variabele in staat
+        IHANFrame<T> frame = parent;
+        for (int i = 1; i < depth; i++) {
+            frame = frame.getParent();
+        }
+        return frame.get(0, slot);
+    }
+
+    @Override
+    public void set(int slot, T value) {
+        values[slot] = value;
+    }
+
+    @Override
+    public IHANFrame<T> getParent() {
+        return parent;
+    }
+}
@@ -0,0 +1,52 @@
+package nl.han.ica.datastructures;
+
+import java.util.HashMap;
+
+public class HANScope<T> implements IHANScope<T> {
+    private final IHANScope<T> parent;
+    // wordt pas aangemaakt bij de eerste definitie, de meeste scopes blijven leeg
+    private HashMap<String, T> names;
+
+    public HANScope() {
+        this(null);
+    }
+
+    public HANScope(IHANScope<T> parent) {
+        this.parent = parent;
+    }
+
+    @Override
+    public void define(String name, T value) {
+        if (names == null) {
+            names = new HashMap<>();
+        }
+        names.put(name, value);
+    }
+
+    @Override
+    public T lookup(String name) {
+        // loop van de binnenste naar de buitenste scope
+        for (IHANScope<T> scope = this; scope != null; scope = scope.getParent()) {
+            T value = scope.lookupLocal(name);
+            if (value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public T lookupLocal(String name) {
+        return names == null ? null : names.get(name);
+    }
+
+    @Override
+    public int size() {
+        return names == null ? 0 : names.size();
+    }
+
+    @Override
+    public IHANScope<T> getParent() {
+        return parent;
+    }
+}
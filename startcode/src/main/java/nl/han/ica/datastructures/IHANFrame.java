@@ -0,0 +1,24 @@
+package nl.han.ica.datastructures;
+
+public interface IHANFrame<T> {
+    /**
+     * Gets the value in a slot of this frame or of one of its parents
+     * @param depth number of frames to go up, 0 is this frame
+     * @param slot index in that frame
+     * @return value in the slot, or null when nothing was set
+     */
+    T get(int depth, int slot);
+
+    /**
+     * Sets the value of a slot in this frame
+     * @param slot index in this frame
+     * @param value value to set
+     */
+    void set(int slot, T value);
+
+    /**
+     * Gets the enclosing frame
+     * @return the parent frame, or null for the outermost frame
+     */
+    IHANFrame<T> getParent();
+}
@@ -0,0 +1,36 @@
+package nl.han.ica.datastructures;
+
+public interface IHANScope<T> {
+    /**
+     * Defines (or redefines) a name in this scope. Parent scopes are not changed.
+     * @param name name to define
+     * @param value value of the name
+     */
+    void define(String name, T value);
+
+    /**
+     * Looks up a name in this scope and, when not found, in the parent scopes
+     * @param name name to look up
+     * @return value of the nearest definition, or null when the name is not defined
+     */
+    T lookup(String name);
+
+    /**
+     * Looks up a name in this scope only. Does not look at the parent scopes
+     * @param name name to look up
+     * @return value of the name, or null when it is not defined in this scope
+     */
+    T lookupLocal(String name);
+
+    /**
+     * Counts the names defined in this scope, not in the parent scopes
+     * @return number of names in this scope
+     */
+    int size();
+
+    /**
+     * Gets the enclosing scope
+     * @return the parent scope, or null for the outermost scope
+     */
+    IHANScope<T> getParent();
+}
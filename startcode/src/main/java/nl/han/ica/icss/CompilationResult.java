@@ -0,0 +1,79 @@
+package nl.han.ica.icss;
+
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.checker.SemanticError;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The state of one compilation: the AST, the errors found so far and how far the
+ * input got through the pipeline. Every call to the Compiler gets its own result,
+ * so results are never shared between threads by the Compiler itself.
+ */
+public class CompilationResult {
+
+    private AST ast;
+    private final List<String> errors = new ArrayList<>();
+    private final List<SemanticError> semanticErrors = new ArrayList<>();
+    private final List<SemanticError> syntaxErrors = new ArrayList<>();
+    private boolean parsed = false;
+    private boolean checked = false;
+    private boolean transformed = false;
+    private String css;
+
+    public AST getAST() {
+        return ast;
+    }
+    public List<String> getErrors() {
+        return errors;
+    }
+    /**
+     * @return the errors of the checker with their line and column; they are in getErrors() as well
+     */
+    public List<SemanticError> getSemanticErrors() {
+        return semanticErrors;
+    }
+    /**
+     * @return the errors of the lexer and parser with the line and column of the offending
+     * token, in the same form as those of the checker; they are in getErrors() as well
+     */
+    public List<SemanticError> getSyntaxErrors() {
+        return syntaxErrors;
+    }
+    public boolean isParsed() {
+        return parsed;
+    }
+    public boolean isChecked() {
+        return checked;
+    }
+    public boolean isTransformed() {
+        return transformed;
+    }
+    public boolean hasErrors() {
+        return !errors.isEmpty();
+    }
+
+    /**
+     * @return the generated CSS, or null when the result was not generated into a String
+     */
+    public String getCss() {
+        return css;
+    }
+
+    void setAST(AST ast) {
+        this.ast = ast;
+    }
+    void setParsed(boolean parsed) {
+        this.parsed = parsed;
+    }
+    void setChecked(boolean checked) {
+        this.checked = checked;
+    }
+    void setTransformed(boolean transformed) {
+        this.transformed = transformed;
+    }
+    void setCss(String css) {
+        this.css = css;
+    }
+}
@@ -0,0 +1,284 @@
+package nl.han.ica.icss;
+
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.binding.Binder;
+import nl.han.ica.icss.checker.Checker;
+import nl.han.ica.icss.checker.SemanticError;
+import nl.han.ica.icss.generator.Generator;
+import nl.han.ica.icss.generator.SourceMapBuilder;
+import nl.han.ica.icss.parser.ASTBuilder;
+import nl.han.ica.icss.parser.ASTListener;
+import nl.han.ica.icss.parser.ICSSLexer;
+import nl.han.ica.icss.parser.ICSSParser;
+import nl.han.ica.icss.transforms.ConstantFolder;
+import nl.han.ica.icss.transforms.Evaluator;
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stateless facade around the parse, check, transform and generate stages.
+ * One instance can be shared by any number of threads: all state of a compilation
+ * lives in its CompilationResult, and the ANTLR lexer and parser are reused per thread.
+ */
+public class Compiler {
+
+    /**
+     * How the AST is extracted from the input.
+     */
+    public enum ParseMode {
+        /** Build the AST during parsing, without an ANTLR parse tree (the default). */
+        DIRECT,
+        /** Build the complete ANTLR parse tree first and walk it with the ASTListener. */
+        PARSE_TREE
+    }
+
+    // ANTLR lexers en parsers zijn niet thread-safe, dus elke thread krijgt zijn eigen exemplaar
+    private static final ThreadLocal<ICSSLexer> lexers = ThreadLocal.withInitial(() -> new ICSSLexer(null));
+    private static final ThreadLocal<ICSSParser> parsers = ThreadLocal.withInitial(() -> new ICSSParser(null));
+
+    // statistieken over de tweetraps-parse: hoe vaak moest SLL terugvallen op LL
+    private final LongAdder parseCount = new LongAdder();
+    private final LongAdder sllFallbackCount = new LongAdder();
+
+    private final ParseMode parseMode;
+
+    public Compiler() {
+        this(ParseMode.DIRECT);
+    }
+    public Compiler(ParseMode parseMode) {
+        this.parseMode = parseMode;
+    }
+
+    /**
+     * @return the number of parses done by this compiler
+     */
+    public long getParseCount() {
+        return parseCount.sum();
+    }
+
+    /**
+     * Parsing first runs with SLL prediction and a bail-out error strategy, which is enough
+     * for nearly all valid input. Only when that fails the input is parsed again with full
+     * LL prediction and the normal error reporting.
+     * @return the number of parses that needed the LL fallback
+     */
+    public long getSllFallbackCount() {
+        return sllFallbackCount.sum();
+    }
+
+    /**
+     * Runs all stages and keeps the generated CSS in the result.
+     * @param input ICSS source text
+     * @return the result; getCss() is null when one of the stages failed
+     */
+    public CompilationResult compile(String input) {
+        StringBuilder css = new StringBuilder();
+        CompilationResult result;
+        try {
+            result = compile(input, css);
+        } catch (IOException e) {
+            // een StringBuilder gooit nooit een IOException
+            throw new UncheckedIOException(e);
+        }
+        if (result.isTransformed()) {
+            result.setCss(css.toString());
+        }
+        return result;
+    }
+
+    /**
+     * Runs all stages and streams the CSS into out. Nothing is written when a stage fails.
+     * @param input ICSS source text
+     * @param out destination of the generated CSS
+     * @return the result of the compilation
+     */
+    public CompilationResult compile(String input, Appendable out) throws IOException {
+        CompilationResult result = parse(input);
+        // alleen verder als de vorige stap geslaagd is
+        if (result.isParsed() && check(result)) {
+            transform(result);
+            if (result.isTransformed()) {
+                generate(result, out);
+            }
+        }
+        return result;
+    }
+
+    public CompilationResult parse(String input) {
+        CompilationResult result = new CompilationResult();
+        ErrorCollector errors = new ErrorCollector(result);
+
+        //Lex (with Antlr's generated lexer), reusing this thread's lexer
+        ICSSLexer lexer = lexers.get();
+        ICSSParser parser = parsers.get();
+        lexer.setInputStream(CharStreams.fromString(input));
+        lexer.removeErrorListeners();
+        lexer.addErrorListener(errors);
+        try {
+            CommonTokenStream tokens = new CommonTokenStream(lexer);
+
+            //Parse (with Antlr's generated parser)
+            parser.setTokenStream(tokens);
+            parser.setBuildParseTree(parseMode == ParseMode.PARSE_TREE);
+            parseCount.increment();
+            ParseTree parseTree;
+            ASTBuilder builder = attachBuilder(parser);
+            try {
+                // snelle poging: SLL-voorspelling die bij de eerste fout stopt, zonder foutmeldingen
+                parser.removeErrorListeners();
+                parser.setErrorHandler(new BailErrorStrategy());
+                parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+                parseTree = parser.stylesheet();
+            } catch (ParseCancellationException e) {
+                // de SLL-poging is mislukt: parse opnieuw met volledige LL en normale foutafhandeling
+                sllFallbackCount.increment();
+                tokens.seek(0);
+                parser.reset();
+                builder = attachBuilder(parser);
+                parser.addErrorListener(errors);
+                parser.setErrorHandler(new DefaultErrorStrategy());
+                parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+                parseTree = parser.stylesheet();
+            }
+
+            if (builder != null) {
+                // de AST is tijdens het parsen al opgebouwd
+                result.setAST(builder.getAST());
+            } else {
+                //Extract AST from the Antlr parse tree
+                ASTListener listener = new ASTListener();
+                ParseTreeWalker walker = new ParseTreeWalker();
+                walker.walk(listener, parseTree);
+
+                result.setAST(listener.getAST());
+            }
+
+        } catch (RecognitionException e) {
+            result.setAST(new AST());
+            result.getErrors().add(e.getMessage());
+
+        } catch (ParseCancellationException e) {
+            result.setAST(new AST());
+            result.getErrors().add("Syntax error");
+        } finally {
+            // laat de invoer los zodat de hergebruikte lexer en parser hem niet vasthouden
+            parser.removeParseListeners();
+            parser.setTokenStream(null);
+            lexer.setInputStream(null);
+        }
+        result.setParsed(result.getErrors().isEmpty());
+        if (result.isParsed()) {
+            // koppel alle variabelen één keer aan hun slots, de checker en evaluator lezen die alleen
+            new Binder().bind(result.getAST());
+        }
+        result.setChecked(false);
+        result.setTransformed(false);
+        return result;
+    }
+
+    // in DIRECT-modus bouwt een verse ASTBuilder de AST op tijdens het parsen
+    private ASTBuilder attachBuilder(ICSSParser parser) {
+        parser.removeParseListeners();
+        if (parseMode != ParseMode.DIRECT) {
+            return null;
+        }
+        ASTBuilder builder = new ASTBuilder();
+        parser.addParseListener(builder);
+        return builder;
+    }
+
+    /**
+     * Wraps an AST that passed the checker before, for example one read back with BinaryAST,
+     * so it can be transformed and generated without parsing and checking it again.
+     */
+    public CompilationResult checked(AST ast) {
+        CompilationResult result = new CompilationResult();
+        result.setAST(ast);
+        result.setParsed(true);
+        result.setChecked(true);
+        return result;
+    }
+
+    public boolean check(CompilationResult result) {
+        return check(result, new Checker(), true);
+    }
+
+    /**
+     * @param checker the checker to use, e.g. one that caches statements
+     * @param fold whether to fold constants; not for trees whose statements are reused
+     */
+    boolean check(CompilationResult result, Checker checker, boolean fold) {
+        if (result.getAST() == null)
+            return false;
+
+        // de checker geeft de fouten zelf terug, met hun regel en kolom
+        List<SemanticError> errors = checker.check(result.getAST());
+        for (SemanticError e : errors) {
+            result.getErrors().add(e.toString());
+        }
+        result.getSemanticErrors().addAll(errors);
+
+        if (errors.isEmpty() && fold) {
+            // een gecheckte AST kan veilig vooraf uitgerekend worden
+            (new ConstantFolder()).apply(result.getAST());
+        }
+
+        result.setChecked(errors.isEmpty());
+        result.setTransformed(false);
+        return errors.isEmpty();
+    }
+
+    public void transform(CompilationResult result) {
+        transform(result, new Evaluator());
+    }
+
+    /**
+     * @param evaluator the evaluator to use, e.g. to read its globals afterwards
+     */
+    void transform(CompilationResult result, Evaluator evaluator) {
+        if (result.getAST() == null)
+            return;
+
+        // de geparste AST blijft ongewijzigd, het resultaat krijgt de geëvalueerde AST
+        result.setAST(evaluator.evaluate(result.getAST()));
+
+        result.setTransformed(result.getErrors().isEmpty());
+    }
+
+    public void generate(CompilationResult result, Appendable out) throws IOException {
+        (new Generator()).generate(result.getAST(), out);
+    }
+
+    /**
+     * Streams the CSS into out and fills the source map while writing.
+     * @param sourceMap receives a mapping for every generated rule and declaration
+     */
+    public void generate(CompilationResult result, Appendable out, SourceMapBuilder sourceMap) throws IOException {
+        (new Generator()).generate(result.getAST(), out, sourceMap);
+    }
+
+    //Catch ANTLR errors of one compilation
+    private static class ErrorCollector extends BaseErrorListener {
+        private final CompilationResult result;
+
+        ErrorCollector(CompilationResult result) {
+            this.result = result;
+        }
+
+        @Override
+        public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
+                                int charPositionInLine, String msg, RecognitionException e) {
+            result.getErrors().add("Syntax error: " + msg);
+            // ook met de positie, voor wie de fout zelf wil aanwijzen
+            result.getSyntaxErrors().add(new SemanticError("Syntax error: " + msg, line, charPositionInLine));
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package nl.han.ica.icss;
+
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.ASTNode;
+import nl.han.ica.icss.ast.Import;
+import nl.han.ica.icss.ast.SourcePositions;
+import nl.han.ica.icss.ast.Stylesheet;
+import nl.han.ica.icss.binding.Binder;
+import nl.han.ica.icss.checker.SemanticError;
+import nl.han.ica.icss.parser.ICSSLexer;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.Token;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parses ICSS one top-level statement (assignment, stylerule or if/else clause) at a time
+ * and reuses the AST of every statement whose text did not change since the previous
+ * parse. Only the lexer runs over the whole input; the new AST gets a fresh position table
+ * in which the positions of reused statements are moved to where they are now.
+ *
+ * Reused statements are the same node objects as in the previous AST, so a Checker with a
+ * statement cache and the AST pane can recognise them. Their nodes keep the id they got when
+ * they were parsed, which is unique among the statements the parser keeps, so every AST has
+ * its own position table and an earlier result keeps its positions. Such trees must not be
+ * changed in place, e.g. by the ConstantFolder.
+ *
+ * When there is nothing to reuse, like when a file is opened or replaced as a whole, the input
+ * is parsed by the full parser, which is faster, and its statements are kept for the next parse.
+ *
+ * The full grammar stops without an error at input it cannot continue with, such as an import
+ * after another statement, while separate statements would each parse. Such input is parsed
+ * as a whole like the Compiler does, so both accept the same input and build the same AST.
+ *
+ * Keeps the statements of the last parse, so use one instance per editor, like a Pipeline.
+ */
+public class IncrementalParser {
+
+    private final Compiler compiler;
+    private final ICSSLexer lexer = new ICSSLexer(null);
+    // de statements van de vorige parse, op hun tekst
+    private Map<String, Chunk> chunks = new HashMap<>();
+    // de ids voor de nodes van nieuwe statements; die van verdwenen statements worden hergebruikt
+    private final Deque<Integer> freeIds = new ArrayDeque<>();
+    private int nextId = 1;
+    private int rootId = 0;
+    private int parsedCount;
+    private int reusedCount;
+
+    public IncrementalParser() {
+        this(new Compiler());
+    }
+    public IncrementalParser(Compiler compiler) {
+        this.compiler = compiler;
+    }
+
+    /**
+     * @return the number of statements that had to be parsed by the last parse
+     */
+    public int getParsedCount() {
+        return parsedCount;
+    }
+    /**
+     * @return the number of statements that the last parse took over from the one before
+     */
+    public int getReusedCount() {
+        return reusedCount;
+    }
+
+    public CompilationResult parse(String input) {
+        Map<String, Chunk> previous = chunks;
+        chunks = new HashMap<>();
+        parsedCount = 0;
+        reusedCount = 0;
+
+        // de tekst van elk statement; witruimte ervoor hoort er niet bij, dan blijft de tekst gelijk als er regels bij komen
+        List<Integer> starts = new ArrayList<>();
+        List<Integer> ends = new ArrayList<>();
+        boolean reusable = false;
+        int start = 0;
+        for (int end : statementEnds(input)) {
+            while (start < end && Character.isWhitespace(input.charAt(start))) {
+                start++;
+            }
+            if (start < end) {
+                starts.add(start);
+                ends.add(end);
+                reusable |= previous.containsKey(input.substring(start, end));
+            }
+            start = end;
+        }
+        // zonder iets om te hergebruiken, zoals bij het openen van een bestand, is de volledige parser sneller
+        if (!reusable) {
+            return parseWhole(input, starts, ends);
+        }
+
+        CompilationResult result = new CompilationResult();
+        Stylesheet root = new Stylesheet();
+        AST ast = new AST(root);
+        ast.positions = new SourcePositions();
+        ast.positions.add(root, rootId, 1, 0, 0, input.length());
+
+        // de regel en kolom van offset, bijgehouden terwijl we door de invoer lopen
+        int offset = 0;
+        int line = 1;
+        int column = 0;
+        // of alleen imports gezien zijn, en of de volledige parser dezelfde statements zou vinden
+        boolean onlyImports = true;
+        boolean whole = true;
+        for (int i = 0; i < starts.size(); i++) {
+            start = starts.get(i);
+            for (; offset < start; offset++) {
+                if (input.charAt(offset) == '\n') {
+                    line++;
+                    column = 0;
+                } else {
+                    column++;
+                }
+            }
+
+            String text = input.substring(start, ends.get(i));
+            // remove, zodat twee gelijke statements in één invoer niet dezelfde nodes krijgen
+            Chunk chunk = previous.remove(text);
+            if (chunk == null) {
+                chunk = parseChunk(text);
+                parsedCount++;
+            } else {
+                reusedCount++;
+            }
+            chunks.put(text, chunk);
+            // een statement dat niets oplevert, of een import na een ander statement, beëindigt de volledige parse
+            if (chunk.statements.isEmpty() && chunk.errors.isEmpty()) {
+                whole = false;
+            }
+            for (ASTNode statement : chunk.statements) {
+                if (!(statement instanceof Import)) {
+                    onlyImports = false;
+                } else if (!onlyImports) {
+                    whole = false;
+                }
+            }
+
+            root.body.addAll(chunk.statements);
+            result.getErrors().addAll(chunk.errors);
+            for (SemanticError error : chunk.syntaxErrors) {
+                // de positie is ten opzichte van het begin van het statement
+                result.getSyntaxErrors().add(new SemanticError(error.description,
+                        line + error.line - 1, error.column + (error.line == 1 ? column : 0)));
+            }
+            chunk.moveTo(ast.positions, line, column, start);
+        }
+        // de ids van statements die weg zijn kunnen opnieuw uitgedeeld worden; een oudere AST heeft zijn eigen tabel
+        for (Chunk removed : previous.values()) {
+            for (int id : removed.ids) {
+                freeIds.push(id);
+            }
+        }
+
+        if (!whole) {
+            return compiler.parse(input);
+        }
+
+        result.setAST(ast);
+        result.setParsed(result.getErrors().isEmpty());
+        if (result.isParsed()) {
+            // de slots hangen af van alle statements samen, dus de hele boom wordt opnieuw gebonden
+            new Binder().bind(ast);
+        }
+        return result;
+    }
+
+    // parset de hele invoer in één keer, en onthoudt de statements als de volledige parser dezelfde vindt
+    private CompilationResult parseWhole(String input, List<Integer> starts, List<Integer> ends) {
+        CompilationResult result = compiler.parse(input);
+        parsedCount = starts.size();
+        // alle ids zijn weer vrij; de nodes van deze parse hebben de ids uit zijn tabel
+        freeIds.clear();
+        rootId = 0;
+        nextId = 1;
+
+        AST ast = result.getAST();
+        if (!result.isParsed() || ast.positions == null || !ast.positions.contains(ast.root)
+                || ast.root.body.size() != starts.size()) {
+            return result;
+        }
+        Map<String, Chunk> found = new HashMap<>();
+        for (int i = 0; i < starts.size(); i++) {
+            ASTNode statement = ast.root.body.get(i);
+            int start = starts.get(i);
+            if (!ast.positions.contains(statement) || ast.positions.getStart(statement.getPositionId()) != start
+                    || ast.positions.getStop(statement.getPositionId()) != ends.get(i)) {
+                return result;
+            }
+            String text = input.substring(start, ends.get(i));
+            if (found.containsKey(text)) {
+                // twee gelijke statements: de tweede wordt bij de volgende parse toch opnieuw geparsed
+                continue;
+            }
+            found.put(text, new Chunk(List.of(statement), List.of(), List.of(), ast.positions,
+                    ast.positions.getLine(statement.getPositionId()), ast.positions.getColumn(statement.getPositionId()), start));
+        }
+        chunks = found;
+        rootId = ast.root.getPositionId();
+        nextId = ast.positions.size();
+        return result;
+    }
+
+    // geeft voor elk statement op het hoogste niveau de offset direct na het laatste token
+    private List<Integer> statementEnds(String input) {
+        lexer.setInputStream(CharStreams.fromString(input));
+        lexer.removeErrorListeners();
+        List<? extends Token> tokens = lexer.getAllTokens();
+        lexer.setInputStream(null);
+
+        List<Integer> ends = new ArrayList<>();
+        int depth = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            int type = tokens.get(i).getType();
+            boolean end = false;
+            if (type == ICSSLexer.OPEN_BRACE) {
+                depth++;
+            } else if (type == ICSSLexer.CLOSE_BRACE) {
+                depth = Math.max(0, depth - 1);
+                // een if-clause loopt door tot en met zijn else-clause
+                end = depth == 0 && (i + 1 == tokens.size() || tokens.get(i + 1).getType() != ICSSLexer.ELSE);
+            } else if (type == ICSSLexer.SEMICOLON) {
+                end = depth == 0;
+            }
+            if (end) {
+                ends.add(tokens.get(i).getStopIndex() + 1);
+            }
+        }
+        // een onafgemaakt statement aan het eind loopt door tot het einde van de invoer
+        ends.add(input.length());
+        return ends;
+    }
+
+    private Chunk parseChunk(String text) {
+        CompilationResult parsed = compiler.parse(text);
+        AST ast = parsed.getAST();
+        Chunk chunk = new Chunk(new ArrayList<>(ast.root.body), List.copyOf(parsed.getErrors()),
+                List.copyOf(parsed.getSyntaxErrors()), ast.positions, 1, 0, 0);
+        // een id dat uniek is onder alle statements die bewaard worden, zodat ze het bij hergebruik houden
+        for (int i = 0; i < chunk.ids.length; i++) {
+            chunk.ids[i] = freeIds.isEmpty() ? nextId++ : freeIds.pop();
+        }
+        return chunk;
+    }
+
+    // één statement (of een paar, na een syntaxfout) met de posities ten opzichte van het begin van zijn tekst
+    private static class Chunk {
+        final List<ASTNode> statements;
+        final List<String> errors;
+        final List<SemanticError> syntaxErrors;
+        // de nodes met een positie, met het id dat ze in elke AST hebben
+        final List<ASTNode> nodes = new ArrayList<>();
+        final int[] ids;
+        final int[] lines;
+        final int[] columns;
+        final int[] starts;
+        final int[] stops;
+
+        // neemt de posities over uit de tabel van de parse, ten opzichte van de regel, kolom en offset waar de tekst begint
+        Chunk(List<ASTNode> statements, List<String> errors, List<SemanticError> syntaxErrors,
+              SourcePositions positions, int line, int column, int offset) {
+            this.statements = statements;
+            this.errors = errors;
+            this.syntaxErrors = syntaxErrors;
+            if (positions != null) {
+                for (ASTNode statement : statements) {
+                    collect(statement, positions);
+                }
+            }
+            ids = new int[nodes.size()];
+            lines = new int[nodes.size()];
+            columns = new int[nodes.size()];
+            starts = new int[nodes.size()];
+            stops = new int[nodes.size()];
+            for (int i = 0; i < ids.length; i++) {
+                int id = nodes.get(i).getPositionId();
+                ids[i] = id;
+                lines[i] = positions.getLine(id) - line + 1;
+                columns[i] = positions.getColumn(id) - (lines[i] == 1 ? column : 0);
+                starts[i] = positions.getStart(id) - offset;
+                stops[i] = positions.getStop(id) - offset;
+            }
+        }
+
+        private void collect(ASTNode node, SourcePositions positions) {
+            // na een syntaxfout kan een kind ontbreken
+            if (node == null) {
+                return;
+            }
+            if (positions.contains(node)) {
+                nodes.add(node);
+            }
+            for (int i = 0; i < node.childCount(); i++) {
+                collect(node.child(i), positions);
+            }
+        }
+
+        // zet de nodes in de tabel van een nieuwe AST, verschoven naar waar de tekst nu begint;
+        // de nodes zelf veranderen niet, ze horen ook nog bij de vorige AST
+        void moveTo(SourcePositions target, int line, int column, int offset) {
+            for (int i = 0; i < ids.length; i++) {
+                target.add(nodes.get(i), ids[i], line + lines[i] - 1, columns[i] + (lines[i] == 1 ? column : 0),
+                        offset + starts[i], offset + stops[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package nl.han.ica.icss;
+
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.ASTNode;
+import nl.han.ica.icss.ast.Import;
+import nl.han.ica.icss.ast.Literal;
+import nl.han.ica.icss.binding.Binder;
+import nl.han.ica.icss.transforms.Evaluator;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+
+/**
+ * Compiles ICSS files together with the files they import. Every file is a module that is
+ * read, parsed, checked and evaluated once, however many files import it: importers get the
+ * global variables of the evaluated module and never parse it again.
+ *
+ * All modules that are not known yet are parsed in parallel, one wave of imports at a time.
+ * Then every module is compiled as soon as the modules it imports are compiled, so modules
+ * that do not depend on each other compile in parallel. Modules in an import cycle are not
+ * compiled; an import of a module that failed stays unresolved, which the Checker reports.
+ *
+ * A graph reads every file only once, so use a new graph when the files may have changed.
+ * compileEach() hands every module over as soon as it is compiled and then drops its input
+ * and AST, so that a graph for thousands of files does not keep all of them in memory.
+ */
+public class ModuleGraph {
+
+    private final Compiler compiler;
+    private final Executor executor;
+    // alle modules die ooit geladen zijn, op hun genormaliseerde pad
+    private final Map<Path, Module> modules = new HashMap<>();
+    // per module het moment dat hij gecompileerd is
+    private final Map<Path, CompletableFuture<Void>> compiled = new HashMap<>();
+
+    /**
+     * @param compiler the compiler that parses and checks the modules, shared by all threads
+     * @param executor runs the parses and compilations of the modules
+     */
+    public ModuleGraph(Compiler compiler, Executor executor) {
+        this.compiler = compiler;
+        this.executor = executor;
+    }
+
+    /**
+     * Compiles the files and everything they import. Modules that were compiled by an
+     * earlier call are not compiled again.
+     * @param files the .icss files
+     * @return the compiled module of every file, by the path it was given with
+     */
+    public synchronized Map<Path, Module> compileAll(Collection<Path> files) {
+        List<Path> keys = keysOf(files);
+        load(keys);
+
+        // elke module wacht op de modules die hij importeert; de volgorde komt uit de graaf
+        Map<Path, State> states = new HashMap<>();
+        for (Path key : keys) {
+            schedule(key, states, new ArrayList<>());
+        }
+        CompletableFuture.allOf(keys.stream().map(compiled::get).toArray(CompletableFuture<?>[]::new)).join();
+
+        Map<Path, Module> result = new LinkedHashMap<>();
+        for (Path file : files) {
+            result.put(file, modules.get(keyOf(file)));
+        }
+        return result;
+    }
+
+    /**
+     * Compiles the files and everything they import, and calls the consumer for every file as
+     * soon as its module is compiled, on the executor. Afterwards the module only keeps its
+     * global variables for the modules that import it: its input and result are dropped, also
+     * those of the imported modules that were not asked for. Returns when every file is handed over.
+     * @param files the .icss files
+     * @param consumer receives every file, by the path it was given with, and its compiled module
+     */
+    public synchronized void compileEach(Collection<Path> files, BiConsumer<Path, Module> consumer) {
+        List<Path> keys = keysOf(files);
+        load(keys);
+
+        Map<Path, State> states = new HashMap<>();
+        List<CompletableFuture<Void>> handled = new ArrayList<>();
+        Set<Path> requested = new HashSet<>(keys);
+        int index = 0;
+        for (Path file : files) {
+            Module module = modules.get(keys.get(index));
+            handled.add(schedule(keys.get(index++), states, new ArrayList<>()).thenRunAsync(() -> {
+                consumer.accept(file, module);
+                module.release();
+            }, executor));
+        }
+        // geïmporteerde modules die niet gevraagd zijn, zijn na hun compilatie alleen nog om hun globals nodig
+        for (Map.Entry<Path, Module> entry : modules.entrySet()) {
+            if (!requested.contains(entry.getKey())) {
+                Module module = entry.getValue();
+                handled.add(schedule(entry.getKey(), states, new ArrayList<>()).thenRun(module::release));
+            }
+        }
+        CompletableFuture.allOf(handled.toArray(new CompletableFuture<?>[0])).join();
+    }
+
+    /**
+     * @return the number of modules that were loaded, imported ones included
+     */
+    public synchronized int getModuleCount() {
+        return modules.size();
+    }
+
+    // parse de nieuwe modules en daarna wat zij importeren, steeds een hele golf tegelijk
+    private void load(List<Path> keys) {
+        Set<Path> wave = new LinkedHashSet<>();
+        for (Path key : keys) {
+            if (!modules.containsKey(key)) {
+                wave.add(key);
+            }
+        }
+        while (!wave.isEmpty()) {
+            List<CompletableFuture<Module>> parses = new ArrayList<>();
+            for (Path key : wave) {
+                parses.add(CompletableFuture.supplyAsync(() -> parse(key), executor));
+            }
+            Set<Path> next = new LinkedHashSet<>();
+            for (CompletableFuture<Module> parse : parses) {
+                Module module = parse.join();
+                modules.put(module.file, module);
+            }
+            // pas als de hele golf geladen is, want een import kan ook naar een module uit deze golf wijzen
+            for (Path key : wave) {
+                for (Path imported : modules.get(key).imports) {
+                    if (!modules.containsKey(imported)) {
+                        next.add(imported);
+                    }
+                }
+            }
+            wave = next;
+        }
+    }
+
+    private Module parse(Path key) {
+        Module module = new Module(key);
+        long start = System.nanoTime();
+        try {
+            module.input = Files.readAllBytes(key);
+        } catch (IOException e) {
+            module.result = new CompilationResult();
+            module.result.getErrors().add("ERROR: Cannot read " + key + ": " + e.getMessage());
+            module.nanos = System.nanoTime() - start;
+            return module;
+        }
+        module.result = compiler.parse(new String(module.input, StandardCharsets.UTF_8));
+        if (module.result.isParsed()) {
+            // imports staan altijd bovenaan de stylesheet, relatief aan het importerende bestand
+            for (ASTNode child : module.result.getAST().root.body) {
+                if (!(child instanceof Import)) break;
+                Path imported = keyOf(key.resolveSibling(((Import) child).path));
+                module.imports.add(imported);
+            }
+        }
+        module.nanos = System.nanoTime() - start;
+        return module;
+    }
+
+    // plan de compilatie van een module na die van zijn imports, en zoek daarbij naar cycles
+    private CompletableFuture<Void> schedule(Path key, Map<Path, State> states, List<Path> path) {
+        CompletableFuture<Void> done = compiled.get(key);
+        if (done != null) {
+            return done;
+        }
+        Module module = modules.get(key);
+        if (states.get(key) == State.VISITING) {
+            // de module importeert zichzelf via de modules op het pad
+            List<Path> cycle = new ArrayList<>(path.subList(path.indexOf(key), path.size()));
+            cycle.add(key);
+            for (int i = 0; i < cycle.size() - 1; i++) {
+                modules.get(cycle.get(i)).cycle = cycle;
+            }
+            return null;
+        }
+        states.put(key, State.VISITING);
+        path.add(key);
+        List<CompletableFuture<Void>> dependencies = new ArrayList<>();
+        for (Path imported : module.imports) {
+            CompletableFuture<Void> dependency = schedule(imported, states, path);
+            if (dependency != null) {
+                dependencies.add(dependency);
+            }
+        }
+        path.remove(path.size() - 1);
+        states.put(key, State.DONE);
+
+        done = CompletableFuture.allOf(dependencies.toArray(new CompletableFuture<?>[0]))
+                .thenRunAsync(() -> compile(module), executor);
+        compiled.put(key, done);
+        return done;
+    }
+
+    private void compile(Module module) {
+        if (!module.result.isParsed()) {
+            return;
+        }
+        long start = System.nanoTime();
+        if (module.cycle != null) {
+            StringBuilder cycle = new StringBuilder();
+            for (Path file : module.cycle) {
+                cycle.append(cycle.length() == 0 ? "" : " -> ").append(file.getFileName());
+            }
+            module.result.getErrors().add("ERROR: Import cycle: " + cycle);
+            module.nanos += System.nanoTime() - start;
+            return;
+        }
+
+        // geef elke import de globale variabelen van zijn module, en bind daarna opnieuw
+        AST ast = module.result.getAST();
+        int index = 0;
+        for (ASTNode child : ast.root.body) {
+            if (!(child instanceof Import)) break;
+            Module imported = modules.get(module.imports.get(index++));
+            if (imported.globals != null) {
+                ((Import) child).resolve(imported.globals);
+            }
+        }
+        new Binder().bind(ast);
+
+        if (compiler.check(module.result)) {
+            module.checked = ast;
+            Evaluator evaluator = new Evaluator();
+            module.result.setAST(evaluator.evaluate(ast));
+            module.result.setTransformed(true);
+            module.globals = evaluator.getGlobals();
+        }
+        module.nanos += System.nanoTime() - start;
+    }
+
+    private static List<Path> keysOf(Collection<Path> files) {
+        List<Path> keys = new ArrayList<>();
+        for (Path file : files) {
+            keys.add(keyOf(file));
+        }
+        return keys;
+    }
+
+    private static Path keyOf(Path file) {
+        return file.toAbsolutePath().normalize();
+    }
+
+    private enum State {
+        VISITING,
+        DONE
+    }
+
+    /**
+     * One ICSS file in the graph.
+     */
+    public static class Module {
+        private final Path file;
+        private byte[] input;
+        private CompilationResult result;
+        // de AST na het checken en voor het evalueren
+        private AST checked;
+        // de modules die deze module importeert, in de volgorde van de imports
+        private final List<Path> imports = new ArrayList<>();
+        // de globale variabelen na het evalueren, null als de module niet gecompileerd is
+        private Map<String, Literal> globals;
+        // de modules van de import-cycle waar deze module in zit
+        private List<Path> cycle;
+        private long nanos;
+
+        private Module(Path file) {
+            this.file = file;
+        }
+
+        // alleen de globals blijven over, voor de modules die deze module importeren
+        private void release() {
+            input = null;
+            result = null;
+            checked = null;
+        }
+
+        public Path getFile() {
+            return file;
+        }
+
+        /**
+         * @return the contents of the file, or null when it could not be read
+         */
+        public byte[] getInput() {
+            return input;
+        }
+
+        /**
+         * @return the result of the compilation; when it is transformed it holds the evaluated AST
+         */
+        public CompilationResult getResult() {
+            return result;
+        }
+
+        /**
+         * @return the AST that passed the checker, before it was evaluated, or null when it did not pass
+         */
+        public AST getCheckedAST() {
+            return checked;
+        }
+
+        public List<Path> getImports() {
+            return imports;
+        }
+
+        /**
+         * @return the global variables at the end of the module by name, or null when it did not compile
+         */
+        public Map<String, Literal> getGlobals() {
+            return globals;
+        }
+
+        /**
+         * @return the time spent reading, parsing, checking and evaluating this module
+         */
+        public long getNanos() {
+            return nanos;
+        }
+    }
+}
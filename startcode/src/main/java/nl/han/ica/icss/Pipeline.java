@@ -1,143 +1,91 @@
 package nl.han.ica.icss;
 
 import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.Literal;
 import nl.han.ica.icss.checker.Checker;
-import nl.han.ica.icss.checker.SemanticError;
-import nl.han.ica.icss.generator.Generator;
-import nl.han.ica.icss.parser.ASTListener;
-import nl.han.ica.icss.parser.ICSSLexer;
-import nl.han.ica.icss.parser.ICSSParser;
 import nl.han.ica.icss.transforms.Evaluator;
-import org.antlr.v4.runtime.*;
-import org.antlr.v4.runtime.atn.ATNConfigSet;
-import org.antlr.v4.runtime.dfa.DFA;
-import org.antlr.v4.runtime.misc.ParseCancellationException;
-import org.antlr.v4.runtime.tree.ParseTree;
-import org.antlr.v4.runtime.tree.ParseTreeWalker;
 
-import java.util.ArrayList;
-import java.util.BitSet;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
-
-public class Pipeline implements ANTLRErrorListener {
-
-    private AST ast;
-    private boolean parsed = false;
-    private boolean checked = false;
-    private boolean transformed = false;
-    private List<String> errors;
+import java.util.Map;
+
+/**
+ * Step-by-step access to the Compiler for the GUI. A Pipeline remembers the
+ * result of the last step, so unlike the Compiler it must not be shared between threads.
+ *
+ * Parsing and checking are incremental: statements that did not change since the previous
+ * parse are reused, and only checked again when a global variable they read changed type.
+ */
+public class Pipeline {
+
+    private final Compiler compiler;
+    private final IncrementalParser parser;
+    private final Checker checker = new Checker(true);
+    private CompilationResult result;
+    // de globale variabelen na de laatste transform
+    private Map<String, Literal> globals;
 
     public Pipeline() {
-        errors = new ArrayList<>();
+        this(new Compiler());
+    }
+    public Pipeline(Compiler compiler) {
+        this.compiler = compiler;
+        this.parser = new IncrementalParser(compiler);
+        this.result = new CompilationResult();
     }
 
     public AST getAST() {
-        return ast;
+        return result.getAST();
     }
     public List<String> getErrors() {
-        return errors;
+        return result.getErrors();
     }
     public boolean isParsed() {
-        return parsed;
+        return result.isParsed();
     }
     public boolean isChecked() {
-        return checked;
+        return result.isChecked();
     }
     public boolean isTransformed() {
-        return transformed;
+        return result.isTransformed();
+    }
+    /**
+     * @return the global variables by name at the end of the last transformed stylesheet,
+     * or null when nothing was transformed yet
+     */
+    public Map<String, Literal> getGlobals() {
+        return globals;
     }
 
     public void parseString(String input) {
-
-        //Lex (with Antlr's generated lexer)
-        CharStream inputStream = CharStreams.fromString(input);
-        ICSSLexer lexer = new ICSSLexer(inputStream);
-        lexer.removeErrorListeners();
-        lexer.addErrorListener(this);
-        errors.clear();
-        try {
-            CommonTokenStream tokens = new CommonTokenStream(lexer);
-
-            //Parse (with Antlr's generated parser)
-            ICSSParser parser = new ICSSParser(tokens);
-            parser.removeErrorListeners();
-            parser.addErrorListener(this);
-
-            ParseTree parseTree = parser.stylesheet();
-
-            //Extract AST from the Antlr parse tree
-            ASTListener listener = new ASTListener();
-            ParseTreeWalker walker = new ParseTreeWalker();
-            walker.walk(listener, parseTree);
-
-            this.ast = listener.getAST();
-
-        } catch (RecognitionException e) {
-            this.ast = new AST();
-            errors.add(e.getMessage());
-
-        } catch (ParseCancellationException e) {
-            this.ast = new AST();
-            errors.add("Syntax error");
-        }
-        parsed = errors.isEmpty();
-        checked = transformed = false;
+        result = parser.parse(input);
     }
     public boolean check() {
-            if(ast == null)
-                return false;
-
-           (new Checker()).check(this.ast);
-
-            ArrayList<SemanticError> errors = this.ast.getErrors();
-            if (!errors.isEmpty()) {
-                for (SemanticError e : errors) {
-                    this.errors.add(e.toString());
-                }
-            }
-
-            checked = errors.isEmpty();
-            transformed = false;
-            return errors.isEmpty();
+        // geen constant folding: die past de statements aan die de volgende parse hergebruikt
+        return compiler.check(result, checker, false);
     }
 
     public void clearErrors(){
-        errors.clear();
+        result.getErrors().clear();
     }
 
     public void transform() {
-        if(ast == null)
-            return;
-
-        (new Evaluator()).apply(ast);
-
-
-        transformed = errors.isEmpty();
+        Evaluator evaluator = new Evaluator();
+        compiler.transform(result, evaluator);
+        globals = evaluator.getGlobals();
     }
     public String generate() {
-        Generator generator = new Generator();
-        return generator.generate(ast);
-    }
-
-    //Catch ANTLR errors
-    @Override
-    public void reportAmbiguity(Parser arg0, DFA arg1, int arg2, int arg3,
-                                boolean arg4, BitSet arg5, ATNConfigSet arg6) {
-    }
-
-    @Override
-    public void reportAttemptingFullContext(Parser arg0, DFA arg1, int arg2,
-                                            int arg3, BitSet arg4, ATNConfigSet arg5) {
-    }
-
-    @Override
-    public void reportContextSensitivity(Parser arg0, DFA arg1, int arg2,
-                                         int arg3, int arg4, ATNConfigSet arg5) {
+        StringBuilder css = new StringBuilder();
+        try {
+            compiler.generate(result, css);
+        } catch (IOException e) {
+            // een StringBuilder gooit nooit een IOException
+            throw new UncheckedIOException(e);
+        }
+        return css.toString();
     }
-
-    @Override
-    public void syntaxError(Recognizer<?, ?> arg0, Object arg1, int arg2,
-                            int arg3, String arg4, RecognitionException arg5) {
-        errors.add("Syntax error: " + arg4);
+    public void generate(Appendable out) throws IOException {
+        compiler.generate(result, out);
     }
 }
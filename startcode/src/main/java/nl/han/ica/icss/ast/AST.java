@@ -9,6 +9,8 @@ import java.util.Objects;
 public class AST {
 	//The root of the tree
 	public Stylesheet root;
+	//Source positions of the nodes, null when the tree was not parsed
+	public SourcePositions positions;
 
 	public AST() {
 		root = new Stylesheet();
@@ -28,8 +30,8 @@ public class AST {
 	    if(node.hasError()) {
 	        errors.add(node.getError());
         }
-        for(ASTNode child: node.getChildren()) {
-	        collectErrors(errors,child);
+        for(int i = 0; i < node.childCount(); i++) {
+	        collectErrors(errors,node.child(i));
         }
     }
 	@Override
@@ -3,12 +3,30 @@ package nl.han.ica.icss.ast;
 import nl.han.ica.icss.checker.SemanticError;
 
 import java.util.ArrayList;
-import java.util.List;
 
 public class ASTNode {
 
     private SemanticError error = null;
 
+    // index of this node in the SourcePositions of its AST, -1 when the position is not known;
+    // only the ast package gives it out, IdSelector has a field called id of its own
+    int positionId = -1;
+
+    /**
+     * @return the index of this node in the SourcePositions of its AST, -1 when it has no position
+     */
+    public int getPositionId() {
+        return positionId;
+    }
+
+    /**
+     * Gives this node the position of the source node, for a transform that builds a new node
+     * in place of the source node and keeps the position table of the source AST.
+     */
+    public void takePositionOf(ASTNode source) {
+        this.positionId = source.positionId;
+    }
+
     /*
      This method is used in the GUI to create an appropriate label
      in the tree visualisation.
@@ -24,6 +42,16 @@ public class ASTNode {
     public ArrayList<ASTNode> getChildren() {
         return new ArrayList<>();
     }
+    /*
+     Indexed access to the same children as getChildren(), without building a new list.
+     Nodes with children override these methods together with getChildren().
+     */
+    public int childCount() {
+        return getChildren().size();
+    }
+    public ASTNode child(int index) {
+        return getChildren().get(index);
+    }
     /*
     By implementing this method in a subclass you can easily create AST nodes
       incrementally.
@@ -38,6 +66,14 @@ public class ASTNode {
         return this;
     }
 
+    /*
+     Calls the method of the visitor for the class of this node. Every node class
+     overrides this method; unknown subclasses end up in visitNode.
+     */
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitNode(this);
+    }
+
     public SemanticError getError() {
         return this.error;
     }
@@ -45,6 +81,9 @@ public class ASTNode {
     public void setError(String description) {
         this.error = new SemanticError(description);
     }
+    public void setError(SemanticError error) {
+        this.error = error;
+    }
 
     public boolean hasError() {
         return error != null;
@@ -60,9 +99,9 @@ public class ASTNode {
 		builder.append("[");
 		builder.append(getNodeLabel());	
 		builder.append("|");
-		for(ASTNode child : getChildren()) {
-			child.toString(builder);
-		}	
+		for(int i = 0; i < childCount(); i++) {
+			child(i).toString(builder);
+		}
 		builder.append("]");
 	}
 
@@ -71,12 +110,12 @@ public class ASTNode {
         if(! (o instanceof ASTNode))
             return false;
         //Compare all children
-        List<ASTNode> thisChildren = this.getChildren();
-        List<ASTNode> otherChildren = ((ASTNode) o).getChildren();
-        if(otherChildren.size() != thisChildren.size())
+        ASTNode other = (ASTNode) o;
+        int count = this.childCount();
+        if(other.childCount() != count)
             return false;
-        for(int i = 0; i < thisChildren.size(); i++ ) {
-            if(!thisChildren.get(i).equals(otherChildren.get(i))) {
+        for(int i = 0; i < count; i++ ) {
+            if(!this.child(i).equals(other.child(i))) {
                 return false;
             }
         }
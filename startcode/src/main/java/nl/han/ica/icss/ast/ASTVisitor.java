@@ -0,0 +1,47 @@
+package nl.han.ica.icss.ast;
+
+import nl.han.ica.icss.ast.literals.*;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.operations.MultiplyOperation;
+import nl.han.ica.icss.ast.operations.SubtractOperation;
+import nl.han.ica.icss.ast.selectors.ClassSelector;
+import nl.han.ica.icss.ast.selectors.IdSelector;
+import nl.han.ica.icss.ast.selectors.TagSelector;
+
+/**
+ * A visitor has a method for every kind of AST node; node.accept(visitor) calls the one
+ * that belongs to the class of the node. Extend BaseASTVisitor to only handle some kinds.
+ *
+ * @param <R> the result of visiting a node
+ */
+public interface ASTVisitor<R> {
+
+    R visitStylesheet(Stylesheet node);
+    R visitImport(Import node);
+    R visitStylerule(Stylerule node);
+    R visitDeclaration(Declaration node);
+    R visitPropertyName(PropertyName node);
+    R visitVariableAssignment(VariableAssignment node);
+    R visitVariableReference(VariableReference node);
+    R visitIfClause(IfClause node);
+    R visitElseClause(ElseClause node);
+
+    R visitAddOperation(AddOperation node);
+    R visitSubtractOperation(SubtractOperation node);
+    R visitMultiplyOperation(MultiplyOperation node);
+
+    R visitBoolLiteral(BoolLiteral node);
+    R visitColorLiteral(ColorLiteral node);
+    R visitPercentageLiteral(PercentageLiteral node);
+    R visitPixelLiteral(PixelLiteral node);
+    R visitScalarLiteral(ScalarLiteral node);
+
+    R visitClassSelector(ClassSelector node);
+    R visitIdSelector(IdSelector node);
+    R visitTagSelector(TagSelector node);
+
+    /*
+     Called for node classes that have no method of their own.
+     */
+    R visitNode(ASTNode node);
+}
@@ -0,0 +1,546 @@
+package nl.han.ica.icss.ast;
+
+import nl.han.ica.icss.ast.literals.*;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.operations.MultiplyOperation;
+import nl.han.ica.icss.ast.operations.SubtractOperation;
+import nl.han.ica.icss.ast.selectors.ClassSelector;
+import nl.han.ica.icss.ast.selectors.IdSelector;
+import nl.han.ica.icss.ast.selectors.TagSelector;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * A compact binary form of a checked AST, so it can be stored and loaded again without
+ * lexing, parsing, binding or checking. Reading back gives a tree that is equal to the
+ * written one, with the same scopes and slots from the Binder and the same source positions.
+ *
+ * The format is a magic number and a version, followed by a table with every identifier
+ * (variable names, properties, selectors and import paths) once, and then the nodes in
+ * pre-order. Every node starts with a tag byte for its class; the high bit of the tag says
+ * that a source position follows. Ints are varints, signed ones zigzag-encoded; colors are
+ * written as their four ARGB bytes. Positions are stored relative to the previous one.
+ *
+ * Literals are read back through their of() methods, so they are shared as after parsing.
+ */
+public class BinaryAST {
+
+    /** Raise when the format changes; older data is then refused by read(). */
+    public static final int VERSION = 1;
+
+    private static final byte[] MAGIC = {'I', 'C', 'S', 'B'};
+
+    // de soort node; 0 staat voor een ontbrekende node
+    private static final int NONE = 0;
+    private static final int STYLESHEET = 1;
+    private static final int IMPORT = 2;
+    private static final int STYLERULE = 3;
+    private static final int DECLARATION = 4;
+    private static final int PROPERTY_NAME = 5;
+    private static final int VARIABLE_ASSIGNMENT = 6;
+    private static final int VARIABLE_REFERENCE = 7;
+    private static final int IF_CLAUSE = 8;
+    private static final int ELSE_CLAUSE = 9;
+    private static final int ADD_OPERATION = 10;
+    private static final int SUBTRACT_OPERATION = 11;
+    private static final int MULTIPLY_OPERATION = 12;
+    private static final int TRUE_LITERAL = 13;
+    private static final int FALSE_LITERAL = 14;
+    private static final int COLOR_LITERAL = 15;
+    private static final int PERCENTAGE_LITERAL = 16;
+    private static final int PIXEL_LITERAL = 17;
+    private static final int SCALAR_LITERAL = 18;
+    private static final int CLASS_SELECTOR = 19;
+    private static final int ID_SELECTOR = 20;
+    private static final int TAG_SELECTOR = 21;
+    // in de tag: er volgt een positie
+    private static final int POSITIONED = 0x80;
+
+    /**
+     * @param ast a checked AST
+     * @return the AST in the binary format
+     */
+    public static byte[] write(AST ast) {
+        Writer writer = new Writer(ast.positions);
+        writer.node(ast.root);
+
+        // de header en de tabel met namen komen voor de nodes
+        Buffer out = new Buffer(writer.nodes.size + 64);
+        out.bytes(MAGIC, MAGIC.length);
+        out.varint(VERSION);
+        out.varint(writer.strings.size());
+        for (String string : writer.strings) {
+            byte[] utf8 = string.getBytes(StandardCharsets.UTF_8);
+            out.varint(utf8.length);
+            out.bytes(utf8, utf8.length);
+        }
+        out.bytes(writer.nodes.data, writer.nodes.size);
+        return Arrays.copyOf(out.data, out.size);
+    }
+
+    /**
+     * @param data an AST written by write()
+     * @return the AST, with source positions when the written AST had them
+     * @throws IOException when the data is not in this format or of another version
+     */
+    public static AST read(byte[] data) throws IOException {
+        Reader reader = new Reader(data);
+        for (byte magic : MAGIC) {
+            if (reader.position >= data.length || data[reader.position++] != magic) {
+                throw new IOException("Not a binary ICSS AST");
+            }
+        }
+        try {
+            int version = reader.varint();
+            if (version != VERSION) {
+                throw new IOException("Unsupported binary AST version " + version + ", expected " + VERSION);
+            }
+            String[] strings = new String[reader.count()];
+            for (int i = 0; i < strings.length; i++) {
+                int length = reader.count();
+                strings[i] = new String(data, reader.position, length, StandardCharsets.UTF_8);
+                reader.position += length;
+            }
+            reader.strings = strings;
+
+            AST ast = new AST((Stylesheet) reader.node());
+            ast.positions = reader.positions.size() > 0 ? reader.positions : null;
+            return ast;
+        } catch (IndexOutOfBoundsException | ClassCastException e) {
+            throw new IOException("Corrupt binary AST", e);
+        }
+    }
+
+    // schrijft de nodes en verzamelt intussen de namen
+    private static class Writer extends BaseASTVisitor<Void> {
+        private final SourcePositions positions;
+        private final Buffer nodes = new Buffer(1024);
+        private final List<String> strings = new ArrayList<>();
+        private final HashMap<String, Integer> indexes = new HashMap<>();
+        // de vorige positie; posities worden als verschil daarmee geschreven
+        private int line = 1;
+        private int start = 0;
+
+        Writer(SourcePositions positions) {
+            this.positions = positions;
+        }
+
+        void node(ASTNode node) {
+            if (node == null) {
+                nodes.varint(NONE);
+            } else {
+                node.accept(this);
+            }
+        }
+
+        // de tag, met de positie van de node als die bekend is
+        private void tag(int tag, ASTNode node) {
+            if (positions == null || !positions.contains(node)) {
+                nodes.varint(tag);
+                return;
+            }
+            nodes.varint(tag | POSITIONED);
+            int id = node.positionId;
+            nodes.signed(positions.getLine(id) - line);
+            nodes.varint(positions.getColumn(id));
+            nodes.signed(positions.getStart(id) - start);
+            nodes.varint(positions.getStop(id) - positions.getStart(id));
+            line = positions.getLine(id);
+            start = positions.getStart(id);
+        }
+
+        private void string(String string) {
+            Integer index = indexes.get(string);
+            if (index == null) {
+                index = strings.size();
+                strings.add(string);
+                indexes.put(string, index);
+            }
+            nodes.varint(index);
+        }
+
+        private void body(List<? extends ASTNode> body) {
+            nodes.varint(body.size());
+            for (ASTNode child : body) {
+                node(child);
+            }
+        }
+
+        @Override
+        public Void visitNode(ASTNode node) {
+            throw new IllegalArgumentException("Cannot write " + node.getNodeLabel());
+        }
+
+        @Override
+        public Void visitStylesheet(Stylesheet node) {
+            tag(STYLESHEET, node);
+            // -1 (niet gebonden) wordt 0
+            nodes.varint(node.scopeSize + 1);
+            body(node.body);
+            return null;
+        }
+        @Override
+        public Void visitImport(Import node) {
+            tag(IMPORT, node);
+            string(node.path);
+            // de variabelen van een opgeloste import, het aantal + 1; 0 als hij niet opgelost is
+            if (!node.isResolved()) {
+                nodes.varint(0);
+                return null;
+            }
+            nodes.varint(node.names.size() + 1);
+            for (int i = 0; i < node.names.size(); i++) {
+                node(node.names.get(i));
+                node(node.values.get(i));
+            }
+            return null;
+        }
+        @Override
+        public Void visitStylerule(Stylerule node) {
+            tag(STYLERULE, node);
+            nodes.varint(node.scopeSize + 1);
+            body(node.selectors);
+            body(node.body);
+            return null;
+        }
+        @Override
+        public Void visitDeclaration(Declaration node) {
+            tag(DECLARATION, node);
+            node(node.property);
+            node(node.expression);
+            return null;
+        }
+        @Override
+        public Void visitPropertyName(PropertyName node) {
+            tag(PROPERTY_NAME, node);
+            string(node.name);
+            return null;
+        }
+        @Override
+        public Void visitVariableAssignment(VariableAssignment node) {
+            tag(VARIABLE_ASSIGNMENT, node);
+            node(node.name);
+            node(node.expression);
+            return null;
+        }
+        @Override
+        public Void visitVariableReference(VariableReference node) {
+            tag(VARIABLE_REFERENCE, node);
+            string(node.name);
+            nodes.varint(node.depth + 1);
+            nodes.varint(node.slot + 1);
+            return null;
+        }
+        @Override
+        public Void visitIfClause(IfClause node) {
+            tag(IF_CLAUSE, node);
+            nodes.varint(node.scopeSize + 1);
+            node(node.conditionalExpression);
+            body(node.body);
+            node(node.elseClause);
+            return null;
+        }
+        @Override
+        public Void visitElseClause(ElseClause node) {
+            tag(ELSE_CLAUSE, node);
+            nodes.varint(node.scopeSize + 1);
+            body(node.body);
+            return null;
+        }
+
+        @Override
+        public Void visitAddOperation(AddOperation node) {
+            return operation(ADD_OPERATION, node);
+        }
+        @Override
+        public Void visitSubtractOperation(SubtractOperation node) {
+            return operation(SUBTRACT_OPERATION, node);
+        }
+        @Override
+        public Void visitMultiplyOperation(MultiplyOperation node) {
+            return operation(MULTIPLY_OPERATION, node);
+        }
+        private Void operation(int tag, Operation node) {
+            tag(tag, node);
+            node(node.lhs);
+            node(node.rhs);
+            return null;
+        }
+
+        // literals worden gedeeld en hebben geen eigen positie
+        @Override
+        public Void visitBoolLiteral(BoolLiteral node) {
+            nodes.varint(node.value ? TRUE_LITERAL : FALSE_LITERAL);
+            return null;
+        }
+        @Override
+        public Void visitColorLiteral(ColorLiteral node) {
+            nodes.varint(COLOR_LITERAL);
+            nodes.int32(node.value);
+            return null;
+        }
+        @Override
+        public Void visitPercentageLiteral(PercentageLiteral node) {
+            nodes.varint(PERCENTAGE_LITERAL);
+            nodes.signed(node.value);
+            return null;
+        }
+        @Override
+        public Void visitPixelLiteral(PixelLiteral node) {
+            nodes.varint(PIXEL_LITERAL);
+            nodes.signed(node.value);
+            return null;
+        }
+        @Override
+        public Void visitScalarLiteral(ScalarLiteral node) {
+            nodes.varint(SCALAR_LITERAL);
+            nodes.signed(node.value);
+            return null;
+        }
+
+        @Override
+        public Void visitClassSelector(ClassSelector node) {
+            tag(CLASS_SELECTOR, node);
+            string(node.cls);
+            return null;
+        }
+        @Override
+        public Void visitIdSelector(IdSelector node) {
+            tag(ID_SELECTOR, node);
+            string(node.id);
+            return null;
+        }
+        @Override
+        public Void visitTagSelector(TagSelector node) {
+            tag(TAG_SELECTOR, node);
+            string(node.tag);
+            return null;
+        }
+    }
+
+    // leest de nodes in dezelfde volgorde terug
+    private static class Reader {
+        private final byte[] data;
+        private int position;
+        private String[] strings;
+        private final SourcePositions positions = new SourcePositions();
+        private int line = 1;
+        private int start = 0;
+
+        Reader(byte[] data) {
+            this.data = data;
+        }
+
+        ASTNode node() throws IOException {
+            int tag = varint();
+            if (tag == NONE) {
+                return null;
+            }
+            ASTNode node = create(tag & ~POSITIONED);
+            if ((tag & POSITIONED) != 0) {
+                // literals worden gedeeld en hebben nooit een eigen positie
+                if (node instanceof Literal) {
+                    throw new IOException("Corrupt binary AST: literal with a position");
+                }
+                line += signed();
+                int column = varint();
+                start += signed();
+                positions.add(node, line, column, start);
+                positions.setStop(node, start + varint());
+            }
+            fill(node);
+            return node;
+        }
+
+        // maakt de node; literals en namen worden meteen gelezen
+        private ASTNode create(int tag) throws IOException {
+            switch (tag) {
+                case STYLESHEET: return new Stylesheet();
+                case IMPORT: return new Import(null);
+                case STYLERULE: return new Stylerule();
+                case DECLARATION: return new Declaration();
+                case PROPERTY_NAME: return new PropertyName();
+                case VARIABLE_ASSIGNMENT: return new VariableAssignment();
+                case VARIABLE_REFERENCE: return new VariableReference(null);
+                case IF_CLAUSE: return new IfClause();
+                case ELSE_CLAUSE: return new ElseClause();
+                case ADD_OPERATION: return new AddOperation();
+                case SUBTRACT_OPERATION: return new SubtractOperation();
+                case MULTIPLY_OPERATION: return new MultiplyOperation();
+                case TRUE_LITERAL: return BoolLiteral.of(true);
+                case FALSE_LITERAL: return BoolLiteral.of(false);
+                case COLOR_LITERAL: return ColorLiteral.of(int32());
+                case PERCENTAGE_LITERAL: return PercentageLiteral.of(signed());
+                case PIXEL_LITERAL: return PixelLiteral.of(signed());
+                case SCALAR_LITERAL: return ScalarLiteral.of(signed());
+                case CLASS_SELECTOR: return new ClassSelector(null);
+                case ID_SELECTOR: return new IdSelector(null);
+                case TAG_SELECTOR: return new TagSelector(null);
+                default: throw new IOException("Corrupt binary AST: unknown node tag " + tag);
+            }
+        }
+
+        // leest de velden en kinderen van de node, na zijn positie
+        private void fill(ASTNode node) throws IOException {
+            if (node instanceof Stylesheet) {
+                Stylesheet sheet = (Stylesheet) node;
+                sheet.scopeSize = varint() - 1;
+                body(sheet.body);
+            } else if (node instanceof Import) {
+                Import importNode = (Import) node;
+                importNode.path = string();
+                // 0 voor een onopgeloste import, anders het aantal variabelen plus één
+                int resolved = varint();
+                if (resolved != 0) {
+                    int count = checked(resolved - 1);
+                    importNode.names = new ArrayList<>(count);
+                    importNode.values = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        importNode.names.add((VariableReference) node());
+                        importNode.values.add((Literal) node());
+                    }
+                }
+            } else if (node instanceof Stylerule) {
+                Stylerule rule = (Stylerule) node;
+                rule.scopeSize = varint() - 1;
+                int count = count();
+                for (int i = 0; i < count; i++) {
+                    rule.selectors.add((Selector) node());
+                }
+                body(rule.body);
+            } else if (node instanceof Declaration) {
+                Declaration declaration = (Declaration) node;
+                declaration.property = (PropertyName) node();
+                declaration.expression = (Expression) node();
+            } else if (node instanceof PropertyName) {
+                ((PropertyName) node).name = string();
+            } else if (node instanceof VariableAssignment) {
+                VariableAssignment assignment = (VariableAssignment) node;
+                assignment.name = (VariableReference) node();
+                assignment.expression = (Expression) node();
+            } else if (node instanceof VariableReference) {
+                VariableReference reference = (VariableReference) node;
+                reference.name = string();
+                reference.depth = varint() - 1;
+                reference.slot = varint() - 1;
+            } else if (node instanceof IfClause) {
+                IfClause ifClause = (IfClause) node;
+                ifClause.scopeSize = varint() - 1;
+                ifClause.conditionalExpression = (Expression) node();
+                body(ifClause.body);
+                ifClause.elseClause = (ElseClause) node();
+            } else if (node instanceof ElseClause) {
+                ElseClause elseClause = (ElseClause) node;
+                elseClause.scopeSize = varint() - 1;
+                body(elseClause.body);
+            } else if (node instanceof Operation) {
+                Operation operation = (Operation) node;
+                operation.lhs = (Expression) node();
+                operation.rhs = (Expression) node();
+            } else if (node instanceof ClassSelector) {
+                ((ClassSelector) node).cls = string();
+            } else if (node instanceof IdSelector) {
+                ((IdSelector) node).id = string();
+            } else if (node instanceof TagSelector) {
+                ((TagSelector) node).tag = string();
+            }
+        }
+
+        private void body(List<ASTNode> body) throws IOException {
+            int count = count();
+            body.clear();
+            for (int i = 0; i < count; i++) {
+                body.add(node());
+            }
+        }
+
+        private String string() throws IOException {
+            return strings[varint()];
+        }
+
+        // een aantal of een lengte; elk element neemt minstens één byte in, dus meer dan er over is kan niet
+        int count() throws IOException {
+            return checked(varint());
+        }
+
+        int checked(int count) throws IOException {
+            if (count < 0 || count > data.length - position) {
+                throw new IOException("Corrupt binary AST: count " + count + " at offset " + position);
+            }
+            return count;
+        }
+
+        int varint() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                byte b = data[position++];
+                value |= (b & 0x7f) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Corrupt binary AST: varint too long");
+        }
+
+        int signed() throws IOException {
+            int zigzag = varint();
+            return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+
+        int int32() {
+            int value = (data[position] & 0xff) << 24 | (data[position + 1] & 0xff) << 16
+                    | (data[position + 2] & 0xff) << 8 | (data[position + 3] & 0xff);
+            position += 4;
+            return value;
+        }
+    }
+
+    // een groeiende byte-array
+    private static class Buffer {
+        private byte[] data;
+        private int size;
+
+        Buffer(int capacity) {
+            data = new byte[capacity];
+        }
+
+        void varint(int value) {
+            ensure(5);
+            while ((value & ~0x7f) != 0) {
+                data[size++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            data[size++] = (byte) value;
+        }
+
+        // zigzag: kleine negatieve getallen worden ook kleine varints
+        void signed(int value) {
+            varint((value << 1) ^ (value >> 31));
+        }
+
+        void int32(int value) {
+            ensure(4);
+            data[size++] = (byte) (value >>> 24);
+            data[size++] = (byte) (value >>> 16);
+            data[size++] = (byte) (value >>> 8);
+            data[size++] = (byte) value;
+        }
+
+        void bytes(byte[] bytes, int length) {
+            ensure(length);
+            System.arraycopy(bytes, 0, data, size, length);
+            size += length;
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, size + extra));
+            }
+        }
+    }
+}
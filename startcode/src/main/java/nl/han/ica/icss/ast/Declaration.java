@@ -32,6 +32,20 @@ public class Declaration extends ASTNode {
 		    children.add(expression);
 		return children;
 	}
+	@Override
+	public int childCount() {
+		return (property != null ? 1 : 0) + (expression != null ? 1 : 0);
+	}
+	@Override
+	public ASTNode child(int index) {
+		// same order as getChildren(): a missing property or expression is skipped
+		if (index == 0 && property != null)
+			return property;
+		if (index == (property != null ? 1 : 0) && expression != null)
+			return expression;
+		throw new IndexOutOfBoundsException(index);
+	}
+
 	@Override
 	public ASTNode addChild(ASTNode child) {
 		if(child instanceof PropertyName) {
@@ -55,4 +69,9 @@ public class Declaration extends ASTNode {
 	public int hashCode() {
 		return Objects.hash(property, expression);
 	}
+
+	@Override
+	public <R> R accept(ASTVisitor<R> visitor) {
+		return visitor.visitDeclaration(this);
+	}
 }
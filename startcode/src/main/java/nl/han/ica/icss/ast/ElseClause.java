@@ -7,6 +7,9 @@ public class ElseClause extends ASTNode{
 
     public ArrayList<ASTNode> body = new ArrayList<>();
 
+    // number of variable slots in the scope of this node, set by the Binder; -1 when not bound
+    public int scopeSize = -1;
+
     public ElseClause() { }
 
     public ElseClause(ArrayList<ASTNode> body) {
@@ -26,6 +29,15 @@ public class ElseClause extends ASTNode{
         return children;
     }
 
+    @Override
+    public int childCount() {
+        return body.size();
+    }
+    @Override
+    public ASTNode child(int index) {
+        return body.get(index);
+    }
+
     @Override
     public ASTNode addChild(ASTNode child) {
 
@@ -47,6 +59,8 @@ public class ElseClause extends ASTNode{
         return Objects.hash(body);
     }
 
-
-
+    @Override
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitElseClause(this);
+    }
 }
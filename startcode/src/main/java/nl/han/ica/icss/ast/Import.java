@@ -0,0 +1,81 @@
+package nl.han.ica.icss.ast;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * An import makes the global variables of another ICSS file available, with the values
+ * they have at the end of that file. The path is relative to the importing file.
+ *
+ * The variables are filled in by the ModuleGraph once the imported file is checked and
+ * evaluated; until then the import is unresolved and the Checker reports it.
+ */
+public class Import extends ASTNode {
+
+	public String path;
+
+	// the imported variables with their values, in the same order; null when not resolved
+	public List<VariableReference> names;
+	public List<Literal> values;
+
+	public Import(String path) {
+		super();
+		this.path = path;
+	}
+
+	/**
+	 * Sets the variables of the imported file. The AST has to be bound again afterwards.
+	 * @param globals the global variables of the imported file by name
+	 */
+	public void resolve(Map<String, Literal> globals) {
+		names = new ArrayList<>(globals.size());
+		values = new ArrayList<>(globals.size());
+		for (Map.Entry<String, Literal> global : globals.entrySet()) {
+			names.add(new VariableReference(global.getKey()));
+			values.add(global.getValue());
+		}
+	}
+
+	/**
+	 * Makes the import unresolved again, e.g. when the imported file no longer compiles.
+	 */
+	public void unresolve() {
+		names = null;
+		values = null;
+	}
+
+	public boolean isResolved() {
+		return names != null;
+	}
+
+	@Override
+	public String getNodeLabel() {
+		return "Import (" + path + ")";
+	}
+
+	@Override
+	public int childCount() {
+		return 0;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+		if (!super.equals(o)) return false;
+		Import that = (Import) o;
+		return Objects.equals(path, that.path);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(path);
+	}
+
+	@Override
+	public <R> R accept(ASTVisitor<R> visitor) {
+		return visitor.visitImport(this);
+	}
+}
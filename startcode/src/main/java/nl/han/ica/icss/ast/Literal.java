@@ -1,4 +1,14 @@
 package nl.han.ica.icss.ast;
 
+/**
+ * Literals never change after they are created, so the factories of the literal
+ * classes share one instance between all places that use the same value.
+ * Errors are therefore set on the node that uses a literal, never on the literal itself.
+ */
 public abstract class Literal extends Expression {
+
+    @Override
+    public int childCount() {
+        return 0;
+    }
 }
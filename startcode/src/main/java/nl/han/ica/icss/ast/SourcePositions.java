@@ -0,0 +1,98 @@
+package nl.han.ica.icss.ast;
+
+import java.util.Arrays;
+
+/**
+ * Where the nodes of an AST come from in the ICSS source. The positions are kept in
+ * int arrays indexed by the id of a node, so a node only carries one int.
+ *
+ * Offsets are character indexes in the source; the stop offset is exclusive, so
+ * source.substring(getStart(id), getStop(id)) is the text of the node.
+ *
+ * Literals are shared between all places that use the same value and have no
+ * position of their own. Nodes that are shared between the ASTs of several parses,
+ * like the statements that the IncrementalParser reuses, keep their id and have a
+ * position in the table of each of those ASTs.
+ */
+public class SourcePositions {
+	private int[] lines = new int[64];
+	private int[] columns = new int[64];
+	private int[] starts = new int[64];
+	private int[] stops = new int[64];
+	private int size = 0;
+
+	/**
+	 * Gives the node a new id and records where it starts under that id. The stop
+	 * offset is the same as the start until {@link #setStop} is called.
+	 * @param line line of the first token, starting at 1
+	 * @param column position of the first token in its line, starting at 0
+	 * @param start offset of the first character of the first token
+	 * @return the id of the node
+	 */
+	public int add(ASTNode node, int line, int column, int start) {
+		int id = size;
+		add(node, id, line, column, start, start);
+		return id;
+	}
+
+	/**
+	 * Records the position of a node under the given id, and gives the node that id.
+	 * A node that already has the id is not changed, so it can be shared with other tables.
+	 * Ids that are skipped have no position.
+	 * @param stop offset just after the last character of the last token
+	 */
+	public void add(ASTNode node, int id, int line, int column, int start, int stop) {
+		if (id >= lines.length) {
+			int length = Math.max(id + 1, lines.length * 2);
+			lines = Arrays.copyOf(lines, length);
+			columns = Arrays.copyOf(columns, length);
+			starts = Arrays.copyOf(starts, length);
+			stops = Arrays.copyOf(stops, length);
+		}
+		lines[id] = line;
+		columns[id] = column;
+		starts[id] = start;
+		stops[id] = Math.max(start, stop);
+		size = Math.max(size, id + 1);
+		if (node.positionId != id) {
+			node.positionId = id;
+		}
+	}
+
+	/**
+	 * Records where a node that is already in the table ends.
+	 * @param stop offset just after the last character of the last token
+	 */
+	public void setStop(ASTNode node, int stop) {
+		if (contains(node) && stop >= starts[node.positionId]) {
+			stops[node.positionId] = stop;
+		}
+	}
+
+	/**
+	 * @return true when the node has a position in this table
+	 */
+	public boolean contains(ASTNode node) {
+		// regels beginnen bij 1, een overgeslagen id heeft regel 0
+		return node.positionId >= 0 && node.positionId < size && lines[node.positionId] > 0;
+	}
+
+	public int getLine(int id) {
+		return lines[id];
+	}
+	public int getColumn(int id) {
+		return columns[id];
+	}
+	public int getStart(int id) {
+		return starts[id];
+	}
+	public int getStop(int id) {
+		return stops[id];
+	}
+	/**
+	 * @return one more than the highest id in the table
+	 */
+	public int size() {
+		return size;
+	}
+}
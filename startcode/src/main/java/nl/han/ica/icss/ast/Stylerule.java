@@ -8,6 +8,9 @@ public class Stylerule extends ASTNode {
 	public ArrayList<Selector> selectors = new ArrayList<>();
 	public ArrayList<ASTNode> body = new ArrayList<>();
 
+	// number of variable slots in the scope of this node, set by the Binder; -1 when not bound
+	public int scopeSize = -1;
+
     public Stylerule() { }
 
     public Stylerule(Selector selector, ArrayList<ASTNode> body) {
@@ -30,6 +33,17 @@ public class Stylerule extends ASTNode {
 		return children;
 	}
 
+	@Override
+	public int childCount() {
+		return selectors.size() + body.size();
+	}
+	@Override
+	public ASTNode child(int index) {
+		if (index < selectors.size())
+			return selectors.get(index);
+		return body.get(index - selectors.size());
+	}
+
     @Override
     public ASTNode addChild(ASTNode child) {
 		if(child instanceof Selector)
@@ -53,4 +67,9 @@ public class Stylerule extends ASTNode {
 	public int hashCode() {
 		return Objects.hash(selectors, body);
 	}
+
+	@Override
+	public <R> R accept(ASTVisitor<R> visitor) {
+		return visitor.visitStylerule(this);
+	}
 }
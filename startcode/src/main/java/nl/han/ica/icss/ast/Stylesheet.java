@@ -13,6 +13,9 @@ public class Stylesheet extends ASTNode {
 
 
 	public ArrayList<ASTNode> body;
+
+	// number of variable slots in the scope of this node, set by the Binder; -1 when not bound
+	public int scopeSize = -1;
 	
 	public Stylesheet() {
 		this.body = new ArrayList<>();
@@ -29,6 +32,14 @@ public class Stylesheet extends ASTNode {
 		return this.body;
 	}
 	@Override
+	public int childCount() {
+		return body.size();
+	}
+	@Override
+	public ASTNode child(int index) {
+		return body.get(index);
+	}
+	@Override
 	public ASTNode addChild(ASTNode child) {
 	    	body.add(child);
 	    	return this;
@@ -53,4 +64,9 @@ public class Stylesheet extends ASTNode {
 
 		return Objects.hash(body);
 	}
+
+	@Override
+	public <R> R accept(ASTVisitor<R> visitor) {
+		return visitor.visitStylesheet(this);
+	}
 }
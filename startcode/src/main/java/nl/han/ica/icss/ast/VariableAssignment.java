@@ -17,6 +17,19 @@ public class VariableAssignment extends ASTNode {
 		return "VariableAssignment (" + name.name + ")";
 	}
 
+	@Override
+	public int childCount() {
+		return (name != null ? 1 : 0) + (expression != null ? 1 : 0);
+	}
+	@Override
+	public ASTNode child(int index) {
+		if (index == 0 && name != null)
+			return name;
+		if (index == (name != null ? 1 : 0) && expression != null)
+			return expression;
+		throw new IndexOutOfBoundsException(index);
+	}
+
 	@Override
 	public ASTNode addChild(ASTNode child) {
 		if(name == null) {
@@ -53,4 +66,9 @@ public class VariableAssignment extends ASTNode {
 	public int hashCode() {
 		return Objects.hash(name, expression);
 	}
+
+	@Override
+	public <R> R accept(ASTVisitor<R> visitor) {
+		return visitor.visitVariableAssignment(this);
+	}
 }
@@ -5,6 +5,10 @@ import java.util.Objects;
 public class VariableReference extends Expression {
 
 	public String name;
+
+	// where the Binder found the variable: the number of scopes up and the slot in that scope; -1 when not bound
+	public int depth = -1;
+	public int slot = -1;
 	
 	public VariableReference(String name) {
 		super();
@@ -16,6 +20,11 @@ public class VariableReference extends Expression {
 		return "VariableReference (" + name + ")";
 	}
 
+	@Override
+	public int childCount() {
+		return 0;
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if (this == o) return true;
@@ -30,4 +39,9 @@ public class VariableReference extends Expression {
 
 		return Objects.hash(name);
 	}
+
+	@Override
+	public <R> R accept(ASTVisitor<R> visitor) {
+		return visitor.visitVariableReference(this);
+	}
 }
@@ -1,31 +1,103 @@
 package nl.han.ica.icss.ast.literals;
 
+import nl.han.ica.icss.ast.ASTVisitor;
 import nl.han.ica.icss.ast.Literal;
 
-import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * A color packed into one int as ARGB: alpha in the highest byte, then red, green and blue.
+ * Colors without an alpha channel in the source are opaque (alpha 0xff).
+ */
 public class ColorLiteral extends Literal {
-    public String value;
+    // gedeelde kleuren; begrensd zodat een stylesheet met heel veel kleuren de tabel niet laat groeien
+    private static final int MAX_INTERNED = 4096;
+    private static final ConcurrentHashMap<Integer, ColorLiteral> INTERNED = new ConcurrentHashMap<>();
 
-    public ColorLiteral(String value) {
-        this.value = value;
+    public final int value;
+
+    public ColorLiteral(int argb) {
+        this.value = argb;
+    }
+    public ColorLiteral(String text) {
+        this(parse(text));
+    }
+
+    /**
+     * @param argb a packed ARGB color
+     * @return a shared instance for the color, or a new one when the table is full
+     */
+    public static ColorLiteral of(int argb) {
+        ColorLiteral interned = INTERNED.get(argb);
+        if (interned != null) {
+            return interned;
+        }
+        if (INTERNED.size() >= MAX_INTERNED) {
+            return new ColorLiteral(argb);
+        }
+        return INTERNED.computeIfAbsent(argb, ColorLiteral::new);
+    }
+
+    /**
+     * @param text a color such as #ff0000 or #ff000080, in upper or lower case
+     */
+    public static ColorLiteral of(String text) {
+        return of(parse(text));
+    }
+
+    /**
+     * Packs the channels into one ARGB int. Every channel is clamped to 0..255.
+     */
+    public static int argb(int alpha, int red, int green, int blue) {
+        return clamp(alpha) << 24 | clamp(red) << 16 | clamp(green) << 8 | clamp(blue);
+    }
+
+    public int alpha() {
+        return value >>> 24;
+    }
+    public int red() {
+        return value >> 16 & 0xff;
     }
+    public int green() {
+        return value >> 8 & 0xff;
+    }
+    public int blue() {
+        return value & 0xff;
+    }
+
+    private static int parse(String text) {
+        // #rrggbb of #rrggbbaa
+        int rgb = Integer.parseInt(text.substring(1, 7), 16);
+        int alpha = text.length() == 9 ? Integer.parseInt(text.substring(7, 9), 16) : 0xff;
+        return alpha << 24 | rgb;
+    }
+
+    private static int clamp(int channel) {
+        return Math.max(0, Math.min(0xff, channel));
+    }
+
     @Override
     public String getNodeLabel() {
-        return "Color literal (" + value + ")";
+        if (alpha() == 0xff) {
+            return String.format("Color literal (#%06x)", value & 0xffffff);
+        }
+        return String.format("Color literal (#%06x%02x)", value & 0xffffff, alpha());
     }
 
-
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         ColorLiteral that = (ColorLiteral) o;
-        return Objects.equals(value, that.value);
+        return value == that.value;
     }
     @Override
     public int hashCode() {
+        return Integer.hashCode(value);
+    }
 
-        return Objects.hash(value);
+    @Override
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitColorLiteral(this);
     }
 }
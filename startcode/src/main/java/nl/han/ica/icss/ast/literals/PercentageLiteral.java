@@ -1,18 +1,52 @@
 package nl.han.ica.icss.ast.literals;
 
+import nl.han.ica.icss.ast.ASTVisitor;
 import nl.han.ica.icss.ast.Literal;
 
 import java.util.Objects;
 
 public class PercentageLiteral extends Literal {
-    public int value;
+    public final int value;
+
+    // kleine waarden komen veel voor en worden gedeeld
+    private static final int CACHE_LOW = -128;
+    private static final int CACHE_HIGH = 1024;
+    private static final PercentageLiteral[] CACHE = new PercentageLiteral[CACHE_HIGH - CACHE_LOW + 1];
+
+    static {
+        for (int i = 0; i < CACHE.length; i++) {
+            CACHE[i] = new PercentageLiteral(CACHE_LOW + i);
+        }
+    }
 
     public PercentageLiteral(int value) {
         this.value = value;
     }
     public PercentageLiteral(String text) {
-        this.value = Integer.parseInt(text.substring(0, text.length() - 1));
+        this(parse(text));
+    }
+
+    /**
+     * @return a shared instance for values from -128 to 1024, a new one otherwise
+     */
+    public static PercentageLiteral of(int value) {
+        if (value >= CACHE_LOW && value <= CACHE_HIGH) {
+            return CACHE[value - CACHE_LOW];
+        }
+        return new PercentageLiteral(value);
+    }
+
+    /**
+     * @param text a percentage such as 50%
+     */
+    public static PercentageLiteral of(String text) {
+        return of(parse(text));
     }
+
+    private static int parse(String text) {
+        return Integer.parseInt(text.substring(0, text.length() - 1));
+    }
+
     @Override
     public String getNodeLabel() {
         return "Percentage literal (" + value + ")";
@@ -31,4 +65,9 @@ public class PercentageLiteral extends Literal {
     public int hashCode() {
         return Objects.hash(value);
     }
+
+    @Override
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitPercentageLiteral(this);
+    }
 }
@@ -1,18 +1,52 @@
 package nl.han.ica.icss.ast.literals;
 
+import nl.han.ica.icss.ast.ASTVisitor;
 import nl.han.ica.icss.ast.Literal;
 
 import java.util.Objects;
 
 public class PixelLiteral extends Literal {
-    public int value;
+    public final int value;
+
+    // kleine waarden komen veel voor en worden gedeeld
+    private static final int CACHE_LOW = -128;
+    private static final int CACHE_HIGH = 1024;
+    private static final PixelLiteral[] CACHE = new PixelLiteral[CACHE_HIGH - CACHE_LOW + 1];
+
+    static {
+        for (int i = 0; i < CACHE.length; i++) {
+            CACHE[i] = new PixelLiteral(CACHE_LOW + i);
+        }
+    }
 
     public PixelLiteral(int value) {
         this.value = value;
     }
     public PixelLiteral(String text) {
-        this.value = Integer.parseInt(text.substring(0, text.length() - 2));
+        this(parse(text));
+    }
+
+    /**
+     * @return a shared instance for values from -128 to 1024, a new one otherwise
+     */
+    public static PixelLiteral of(int value) {
+        if (value >= CACHE_LOW && value <= CACHE_HIGH) {
+            return CACHE[value - CACHE_LOW];
+        }
+        return new PixelLiteral(value);
+    }
+
+    /**
+     * @param text a pixel size such as 10px
+     */
+    public static PixelLiteral of(String text) {
+        return of(parse(text));
     }
+
+    private static int parse(String text) {
+        return Integer.parseInt(text.substring(0, text.length() - 2));
+    }
+
     @Override
     public String getNodeLabel() {
         return "Pixel literal (" + value + ")";
@@ -31,4 +65,9 @@ public class PixelLiteral extends Literal {
     public int hashCode() {
         return Objects.hash(value);
     }
+
+    @Override
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitPixelLiteral(this);
+    }
 }
@@ -1,18 +1,52 @@
 package nl.han.ica.icss.ast.literals;
 
+import nl.han.ica.icss.ast.ASTVisitor;
 import nl.han.ica.icss.ast.Literal;
 
 import java.util.Objects;
 
 public class ScalarLiteral extends Literal {
-    public int value;
+    public final int value;
+
+    // kleine waarden komen veel voor en worden gedeeld
+    private static final int CACHE_LOW = -128;
+    private static final int CACHE_HIGH = 1024;
+    private static final ScalarLiteral[] CACHE = new ScalarLiteral[CACHE_HIGH - CACHE_LOW + 1];
+
+    static {
+        for (int i = 0; i < CACHE.length; i++) {
+            CACHE[i] = new ScalarLiteral(CACHE_LOW + i);
+        }
+    }
 
     public ScalarLiteral(int value) {
         this.value = value;
     }
     public ScalarLiteral(String text) {
-        this.value = Integer.parseInt(text);
+        this(parse(text));
+    }
+
+    /**
+     * @return a shared instance for values from -128 to 1024, a new one otherwise
+     */
+    public static ScalarLiteral of(int value) {
+        if (value >= CACHE_LOW && value <= CACHE_HIGH) {
+            return CACHE[value - CACHE_LOW];
+        }
+        return new ScalarLiteral(value);
+    }
+
+    /**
+     * @param text a scalar such as 2
+     */
+    public static ScalarLiteral of(String text) {
+        return of(parse(text));
     }
+
+    private static int parse(String text) {
+        return Integer.parseInt(text);
+    }
+
     @Override
     public String getNodeLabel() {
         return "Scalar literal (" + value + ")";
@@ -31,4 +65,9 @@ public class ScalarLiteral extends Literal {
     public int hashCode() {
         return Objects.hash(value);
     }
+
+    @Override
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitScalarLiteral(this);
+    }
 }
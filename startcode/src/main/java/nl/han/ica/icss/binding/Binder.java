@@ -0,0 +1,122 @@
+package nl.han.ica.icss.binding;
+
+import nl.han.ica.datastructures.HANScope;
+import nl.han.ica.datastructures.IHANScope;
+import nl.han.ica.icss.ast.*;
+
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Resolves every variable reference once, so the Checker and the Evaluator can keep
+ * variables in array frames instead of looking names up in maps.
+ *
+ * Scoping is lexical: the stylesheet, every stylerule and every if and else body has
+ * its own scope, and a reference sees the variables assigned before it in its own scope
+ * and in the enclosing scopes. Each scope node gets its number of slots in scopeSize,
+ * each VariableReference gets the depth (number of scopes up) and slot of its variable.
+ * References to unknown variables keep depth -1; the Checker reports them. The variables of
+ * a resolved Import are defined in the scope of the stylesheet.
+ */
+public class Binder {
+    // de scope met per variabele naam de slot in die scope
+    private IHANScope<Integer> scope;
+    // gelijke namen delen één String
+    private HashMap<String, String> names;
+
+    public void bind(AST ast) {
+        scope = null;
+        names = new HashMap<>();
+        ast.root.scopeSize = bindBody(ast.root.body);
+    }
+
+    /**
+     * @return true when the Binder has not run on the AST yet
+     */
+    public static boolean isUnbound(AST ast) {
+        return ast.root != null && ast.root.scopeSize < 0;
+    }
+
+    // bindt de body van een scope en geeft het aantal slots van die scope terug
+    private int bindBody(List<ASTNode> body) {
+        // push een nieuwe scope
+        scope = new HANScope<>(scope);
+        for (ASTNode child : body) {
+            if (child instanceof Stylerule) {
+                Stylerule rule = (Stylerule) child;
+                rule.scopeSize = bindBody(rule.body);
+            } else if (child instanceof Declaration) {
+                bindExpression(((Declaration) child).expression);
+            } else if (child instanceof VariableAssignment) {
+                // eerst de expressie, zodat X := X + 1px de vorige X gebruikt
+                VariableAssignment assignment = (VariableAssignment) child;
+                bindExpression(assignment.expression);
+                define(assignment.name);
+            } else if (child instanceof IfClause) {
+                bindIfClause((IfClause) child);
+            } else if (child instanceof Import && ((Import) child).isResolved()) {
+                // geïmporteerde variabelen zijn globale variabelen die vóór alle toewijzingen bestaan
+                for (VariableReference name : ((Import) child).names) {
+                    define(name);
+                }
+            }
+        }
+        int size = scope.size();
+        // pop de scope
+        scope = scope.getParent();
+        return size;
+    }
+
+    private void bindIfClause(IfClause ifClause) {
+        bindExpression(ifClause.conditionalExpression);
+        ifClause.scopeSize = bindBody(ifClause.body);
+        // de else-body is een eigen scope naast die van de if-body
+        if (ifClause.elseClause != null) {
+            ifClause.elseClause.scopeSize = bindBody(ifClause.elseClause.body);
+        }
+    }
+
+    private void bindExpression(Expression expression) {
+        if (expression instanceof VariableReference) {
+            resolve((VariableReference) expression);
+        } else if (expression instanceof Operation) {
+            bindExpression(((Operation) expression).lhs);
+            bindExpression(((Operation) expression).rhs);
+        }
+    }
+
+    private void define(VariableReference name) {
+        if (name == null) return;
+        name.name = intern(name.name);
+        // een nieuwe toewijzing in dezelfde scope hergebruikt de slot
+        Integer slot = scope.lookupLocal(name.name);
+        if (slot == null) {
+            slot = scope.size();
+            scope.define(name.name, slot);
+        }
+        name.depth = 0;
+        name.slot = slot;
+    }
+
+    private void resolve(VariableReference reference) {
+        reference.name = intern(reference.name);
+        // loop van de binnenste naar de buitenste scope en tel hoe ver we omhoog gaan
+        int depth = 0;
+        for (IHANScope<Integer> current = scope; current != null; current = current.getParent()) {
+            Integer slot = current.lookupLocal(reference.name);
+            if (slot != null) {
+                reference.depth = depth;
+                reference.slot = slot;
+                return;
+            }
+            depth++;
+        }
+        reference.depth = -1;
+        reference.slot = -1;
+    }
+
+    private String intern(String name) {
+        String interned = names.putIfAbsent(name, name);
+        return interned == null ? name : interned;
+    }
+}
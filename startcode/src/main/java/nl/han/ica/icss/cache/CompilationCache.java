@@ -0,0 +1,247 @@
+package nl.han.ica.icss.cache;
+
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.BinaryAST;
+import nl.han.ica.icss.parser.ICSSParser;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Generated CSS on disk, stored under the SHA-256 of the ICSS input together with the
+ * compiler version, the version of the build and the grammar, so a changed compiler never
+ * serves old output.
+ *
+ * Entries are written to a temporary file and moved into place, so readers never see a
+ * half-written entry, also when several workers or processes share the directory. Every
+ * hit touches the modification time of the entry; when the directory grows beyond its
+ * maximum size the least recently used entries are deleted.
+ *
+ * Next to the CSS the checked AST of an input can be stored, in the BinaryAST format, for
+ * callers that need the tree itself, such as for source maps.
+ */
+public class CompilationCache {
+
+    /**
+     * Raise when the compiler produces different output for the same input without a new
+     * release; the implementation version from the manifest of the jar is in the key as well.
+     */
+    public static final int VERSION = 1;
+
+    private static final String EXTENSION = ".css";
+    private static final String AST_EXTENSION = ".ast";
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    // de grammatica zit in de sleutel via de geserialiseerde ATN van de parser
+    private static final byte[] SALT = (VERSION + "\n" + buildVersion() + "\n" + BinaryAST.VERSION + "\n"
+            + ICSSParser._serializedATN + "\n").getBytes(StandardCharsets.UTF_8);
+
+    private final Path directory;
+    private final long maxBytes;
+    // geschatte grootte van de map; -1 tot hij de eerste keer geteld is
+    private final AtomicLong size = new AtomicLong(-1);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param directory where the entries are stored, created when it does not exist
+     * @param maxBytes the size the entries may take together
+     */
+    public CompilationCache(Path directory, long maxBytes) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.maxBytes = maxBytes;
+    }
+
+    // de versie van de build; leeg als de klassen niet uit een jar met een manifest komen, zoals bij het ontwikkelen
+    private static String buildVersion() {
+        String version = CompilationCache.class.getPackage().getImplementationVersion();
+        return version != null ? version : "";
+    }
+
+    /**
+     * @return the key of the input: a hex SHA-256 of the versions, the grammar and the input
+     */
+    public static String key(byte[] input) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // elke JVM moet SHA-256 ondersteunen
+            throw new IllegalStateException(e);
+        }
+        digest.update(SALT);
+        byte[] hash = digest.digest(input);
+        char[] hex = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            hex[i * 2] = HEX_DIGITS[(hash[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = HEX_DIGITS[hash[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * @param input the ICSS file as bytes
+     * @return the CSS that was stored for the input, or null when there is none
+     */
+    public String get(byte[] input) throws IOException {
+        byte[] css = read(entryOf(key(input), EXTENSION));
+        return css != null ? new String(css, StandardCharsets.UTF_8) : null;
+    }
+
+    /**
+     * @param input the ICSS file as bytes
+     * @return the checked AST that was stored for the input, or null when there is none
+     */
+    public AST getAST(byte[] input) throws IOException {
+        byte[] data = read(entryOf(key(input), AST_EXTENSION));
+        return data != null ? BinaryAST.read(data) : null;
+    }
+
+    /**
+     * Stores the CSS for the input, replacing an entry that is already there.
+     */
+    public void put(byte[] input, String css) throws IOException {
+        write(entryOf(key(input), EXTENSION), css.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Stores the AST of the input, which must have passed the checker.
+     */
+    public void putAST(byte[] input, AST ast) throws IOException {
+        write(entryOf(key(input), AST_EXTENSION), BinaryAST.write(ast));
+    }
+
+    // de inhoud van een entry, of null als hij er niet is
+    private byte[] read(Path entry) throws IOException {
+        byte[] data;
+        try {
+            data = Files.readAllBytes(entry);
+        } catch (NoSuchFileException e) {
+            misses.increment();
+            return null;
+        }
+        try {
+            // de laatste hit staat in de wijzigingstijd, daarop wordt het oudste entry gekozen
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (NoSuchFileException e) {
+            // net verwijderd door een andere worker, de gelezen inhoud klopt nog steeds
+        }
+        hits.increment();
+        return data;
+    }
+
+    private void write(Path entry, byte[] data) throws IOException {
+        Path temporary = Files.createTempFile(directory, "entry", ".tmp");
+        long replaced;
+        try {
+            Files.write(temporary, data);
+            // een entry die vervangen wordt telt niet meer mee in de grootte
+            replaced = sizeOf(entry);
+            try {
+                Files.move(temporary, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, entry, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+
+        if (size.get() < 0) {
+            size.compareAndSet(-1, count());
+        } else {
+            size.addAndGet(data.length - replaced);
+        }
+        if (size.get() > maxBytes) {
+            evict();
+        }
+    }
+
+    private static long sizeOf(Path entry) throws IOException {
+        try {
+            return Files.size(entry);
+        } catch (NoSuchFileException e) {
+            return 0;
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the number of bytes in the entries, counted from the directory
+     */
+    public long count() throws IOException {
+        long total = 0;
+        for (Entry entry : entries()) {
+            total += entry.bytes;
+        }
+        return total;
+    }
+
+    // verwijder de minst recent gebruikte entries tot de map weer onder de maximale grootte zit
+    private synchronized void evict() throws IOException {
+        List<Entry> entries = entries();
+        long total = 0;
+        for (Entry entry : entries) {
+            total += entry.bytes;
+        }
+        entries.sort(Comparator.comparing((Entry entry) -> entry.lastUsed));
+        for (int i = 0; i < entries.size() && total > maxBytes; i++) {
+            // een andere worker kan hem al verwijderd hebben
+            if (Files.deleteIfExists(entries.get(i).path)) {
+                total -= entries.get(i).bytes;
+            }
+        }
+        size.set(total);
+    }
+
+    private List<Entry> entries() throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*{" + EXTENSION + "," + AST_EXTENSION + "}")) {
+            for (Path path : stream) {
+                try {
+                    entries.add(new Entry(path, Files.size(path), Files.getLastModifiedTime(path)));
+                } catch (NoSuchFileException e) {
+                    // net verwijderd
+                }
+            }
+        } catch (DirectoryIteratorException e) {
+            throw e.getCause();
+        }
+        return entries;
+    }
+
+    private Path entryOf(String key, String extension) {
+        return directory.resolve(key + extension);
+    }
+
+    private static class Entry {
+        final Path path;
+        final long bytes;
+        final FileTime lastUsed;
+
+        Entry(Path path, long bytes, FileTime lastUsed) {
+            this.path = path;
+            this.bytes = bytes;
+            this.lastUsed = lastUsed;
+        }
+    }
+}
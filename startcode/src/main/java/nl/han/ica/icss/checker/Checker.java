@@ -1,6 +1,8 @@
 package nl.han.ica.icss.checker;
 
 import javafx.scene.paint.Color;
+import nl.han.ica.datastructures.HANFrame;
+import nl.han.ica.datastructures.IHANFrame;
 import nl.han.ica.datastructures.IHANLinkedList;
 import nl.han.ica.icss.ast.*;
 import nl.han.ica.icss.ast.literals.*;
@@ -8,196 +10,388 @@ import nl.han.ica.icss.ast.operations.AddOperation;
 import nl.han.ica.icss.ast.operations.MultiplyOperation;
 import nl.han.ica.icss.ast.operations.SubtractOperation;
 import nl.han.ica.icss.ast.types.ExpressionType;
+import nl.han.ica.icss.binding.Binder;
 
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 
 public class Checker {
-    // stack van scopes met variabele namen en hun types
-    private LinkedList<HashMap<String, ExpressionType>> variableTypes = new LinkedList<>();
-
-    public void check(AST ast) {
-        // initialiseer de globale scope
-        variableTypes = new LinkedList<>();
-        // push een nieuwe scope voor de globale variabelen
-        variableTypes.push(new HashMap<>());
+    // frame met de types van de variabelen in de huidige scope, op de slots van de Binder
+    private IHANFrame<ExpressionType> variableTypes;
+    // bezoekt de statements en geeft voor expressies het type terug
+    private final TypeChecker typeChecker = new TypeChecker();
+    // de fouten worden verzameld terwijl ze gevonden worden, zodat niemand de boom nog een keer hoeft te doorlopen
+    private List<SemanticError> errors;
+    // de posities uit de parser, null als de AST niet geparsed is
+    private SourcePositions positions;
+    // hoeveel frames er boven het globale frame liggen
+    private int level;
+
+    // met een cache worden statements op het hoogste niveau alleen opnieuw gecontroleerd als ze
+    // nieuw zijn, of als een globale variabele die ze lezen een ander type heeft gekregen
+    private Map<ASTNode, CheckedStatement> cache;
+    // de globale variabelen op naam met hun type, tot aan het huidige statement
+    private Map<String, ExpressionType> globals;
+    // van het statement dat nu gecontroleerd wordt: welke globale variabelen het leest en waar fouten zitten
+    private Map<String, ExpressionType> globalsRead;
+    private List<ASTNode> errorNodes;
+
+    public Checker() {
+    }
+
+    /**
+     * @param cacheStatements remember the result of every top-level statement, so checking
+     *                        the next version of a tree that shares statements with this one
+     *                        only checks the new statements and the statements that read a
+     *                        global variable whose type changed
+     */
+    public Checker(boolean cacheStatements) {
+        if (cacheStatements) {
+            cache = new IdentityHashMap<>();
+        }
+    }
+
+    public List<SemanticError> check(AST ast) {
+        // koppel eerst de variabelen aan hun slots, als dat nog niet gebeurd is
+        if (Binder.isUnbound(ast)) {
+            new Binder().bind(ast);
+        }
+        errors = new ArrayList<>();
+        positions = ast.positions;
+        level = 0;
+        // maak het frame voor de globale variabelen
+        variableTypes = new HANFrame<>(ast.root.scopeSize);
         // laat de root van de AST-boom controleren
-        checkStylesheet(ast.root);
+        ast.root.accept(typeChecker);
+        return errors;
     }
 
-    private void checkStylesheet(Stylesheet sheet) {
-        // loop door alle kinderen van stylesheet
-        for (ASTNode child : sheet.getChildren()) {
-            // als de kind een stylerule is, check de stylerule
-            if (child instanceof Stylerule) {
-                checkStylerule((Stylerule) child);
-            // als de kind een variabele toewijzing is, check de toewijzing
-            } else if (child instanceof VariableAssignment) {
-                checkAssignment((VariableAssignment) child);
-            }
+    private void error(ASTNode node, String description) {
+        // zet de regel en kolom in de fout als de parser die heeft bijgehouden
+        SemanticError error;
+        if (positions != null && positions.contains(node)) {
+            error = new SemanticError(description, positions.getLine(node.getPositionId()), positions.getColumn(node.getPositionId()));
+        } else {
+            error = new SemanticError(description);
+        }
+        // de node krijgt de fout ook, zodat de GUI hem nog steeds kan markeren
+        node.setError(error);
+        errors.add(error);
+        if (errorNodes != null) {
+            errorNodes.add(node);
         }
     }
 
-    private void checkStylerule(Stylerule rule) {
-        // push een nieuwe scope voor de stylerule
-        variableTypes.push(new HashMap<>());
-        // loop door alle kinderen van stylerule
-        for (ASTNode child : rule.getChildren()) {
-            // als de kind een declaratie is, check de declaratie
-            if (child instanceof Declaration) {
-                checkDeclaration((Declaration) child);
-            // als de kind een variabele toewijzing is, check de toewijzing
-            } else if (child instanceof VariableAssignment) {
-                checkAssignment((VariableAssignment) child);
-            // als de kind een if-clause is, check de if-clause
-            } else if (child instanceof IfClause) {
-                checkIfClause((IfClause) child);
-            }
-        }
-        // pop de scope van de stylerule
-        variableTypes.pop();
+    private void pushFrame(int size) {
+        variableTypes = new HANFrame<>(variableTypes, size);
+        level++;
     }
 
-    private void checkIfClause(IfClause ifClause) {
-        // controleer of de conditie van if-clause een boolean is
-        ExpressionType conditionType = evaluateExpression(ifClause.conditionalExpression);
-        if (conditionType != ExpressionType.BOOL) {
-            ifClause.setError("If-clause condition must be a boolean literal");
-        }
-        // push een nieuwe scope voor de if-clause
-        variableTypes.push(new HashMap<>());
-        // loop door alle kinderen van if-clause
-        for (ASTNode child : ifClause.body) {
-            // als de kind een declaratie is, check de declaratie
-            if (child instanceof Declaration) {
-                checkDeclaration((Declaration) child);
-            // als de kind een variabele toewijzing is, check de toewijzing
-            } else if (child instanceof VariableAssignment) {
-                checkAssignment((VariableAssignment) child);
-            }
-        }
-        // pop de scope van de if-clause
-        variableTypes.pop();
-
-        // zelfde als de if-clause
-        if (ifClause.elseClause != null) {
-            variableTypes.push(new HashMap<>());
-            for (ASTNode child : ifClause.elseClause.body) {
-                if (child instanceof Declaration) {
-                    checkDeclaration((Declaration) child);
-                } else if (child instanceof VariableAssignment) {
-                    checkAssignment((VariableAssignment) child);
-                }
+    private void popFrame() {
+        variableTypes = variableTypes.getParent();
+        level--;
+    }
+
+    // controleer de statements op het hoogste niveau, en sla statements over die niet veranderd zijn
+    private void checkCachedBody(List<ASTNode> body) {
+        Map<ASTNode, CheckedStatement> checked = new IdentityHashMap<>();
+        globals = new HashMap<>();
+        for (ASTNode statement : body) {
+            CheckedStatement previous = cache.get(statement);
+            CheckedStatement result;
+            if (previous != null && previous.isValid()) {
+                previous.replay();
+                result = previous;
+            } else {
+                result = checkStatement(statement, previous);
+            }
+            checked.put(statement, result);
+        }
+        // statements die niet meer in de boom zitten vallen uit de cache
+        cache = checked;
+        globals = null;
+    }
+
+    private CheckedStatement checkStatement(ASTNode statement, CheckedStatement previous) {
+        // de fouten van de vorige controle gelden niet meer
+        if (previous != null) {
+            for (ASTNode node : previous.errorNodes) {
+                node.setError((SemanticError) null);
             }
-            variableTypes.pop();
         }
+        globalsRead = new HashMap<>();
+        errorNodes = new ArrayList<>();
+        statement.accept(typeChecker);
+
+        CheckedStatement result = new CheckedStatement(statement, globalsRead, errorNodes);
+        globalsRead = null;
+        errorNodes = null;
+        return result;
+    }
+
+    // een type voor in de maps: null betekent daar dat de variabele niet bestaat
+    private static ExpressionType known(ExpressionType type) {
+        return type != null ? type : ExpressionType.UNDEFINED;
     }
 
-    private void checkDeclaration(Declaration declaration) {
-        // controleer of de waarde van de declaratie overeenkomt met het type van de property
-        ExpressionType type = evaluateExpression(declaration.expression);
+    // wat het controleren van één statement op het hoogste niveau heeft opgeleverd
+    private class CheckedStatement {
+        private final ASTNode statement;
+        private final Map<String, ExpressionType> globalsRead;
+        private final ASTNode[] errorNodes;
+        private final String[] descriptions;
+        // het type dat een toewijzing aan zijn variabele geeft
+        private final ExpressionType assigned;
 
-        // controleer of de property overeenkomt met het type van de waarde
-        if (declaration.property.name.equals("width")) {
-            if (type != ExpressionType.PIXEL) {
-                declaration.setError("Only pixel literals can be assigned to width property");
+        CheckedStatement(ASTNode statement, Map<String, ExpressionType> globalsRead, List<ASTNode> errorNodes) {
+            this.statement = statement;
+            this.globalsRead = globalsRead;
+            this.errorNodes = errorNodes.toArray(new ASTNode[0]);
+            this.descriptions = new String[this.errorNodes.length];
+            for (int i = 0; i < descriptions.length; i++) {
+                descriptions[i] = this.errorNodes[i].getError().description;
             }
-        } else if (declaration.property.name.equals("color") || declaration.property.name.equals("background-color")) {
-            if (type != ExpressionType.COLOR) {
-                declaration.setError("Only color literals can be assigned to color property");
+            this.assigned = statement instanceof VariableAssignment
+                    ? variableTypes.get(0, ((VariableAssignment) statement).name.slot)
+                    : null;
+        }
+
+        // het resultaat klopt nog als elke gelezen globale variabele hetzelfde type heeft
+        boolean isValid() {
+            // een import zet zijn variabelen bij elke controle opnieuw, dat is net zo snel als onthouden
+            if (statement instanceof Import) {
+                return false;
             }
+            for (Map.Entry<String, ExpressionType> read : globalsRead.entrySet()) {
+                if (read.getValue() == null ? globals.containsKey(read.getKey())
+                        : read.getValue() != globals.get(read.getKey())) {
+                    return false;
+                }
+            }
+            return true;
         }
-    }
 
-    private void checkAssignment(VariableAssignment child) {
-        // evalueer de expressie van de variabele toewijzing
-        ExpressionType type = evaluateExpression(child.expression);
-        // sla de variabele naam en type op in de huidige scope
-        variableTypes.peek().put(child.name.name, type);
+        // meld dezelfde fouten opnieuw, met de posities van de huidige boom
+        void replay() {
+            for (int i = 0; i < errorNodes.length; i++) {
+                error(errorNodes[i], descriptions[i]);
+            }
+            if (statement instanceof VariableAssignment) {
+                VariableAssignment assignment = (VariableAssignment) statement;
+                variableTypes.set(assignment.name.slot, assigned);
+                globals.put(assignment.name.name, known(assigned));
+            }
+        }
     }
 
     private ExpressionType evaluateExpression(Expression expression) {
-        // bepaal het type van de expressie
-        if (expression instanceof ColorLiteral) {
+        // een ontbrekende expressie heeft geen type
+        if (expression == null) return null;
+        // de expressie kiest zelf de juiste methode van de visitor
+        return expression.accept(typeChecker);
+    }
+
+    private void checkBody(Iterable<ASTNode> body) {
+        // elk kind (declaratie, toewijzing, stylerule of if-clause) controleert zichzelf via de visitor
+        for (ASTNode child : body) {
+            child.accept(typeChecker);
+        }
+    }
+
+    private class TypeChecker extends BaseASTVisitor<ExpressionType> {
+
+        @Override
+        public ExpressionType visitStylesheet(Stylesheet sheet) {
+            // loop door alle kinderen van stylesheet
+            if (cache != null) {
+                checkCachedBody(sheet.body);
+            } else {
+                checkBody(sheet.body);
+            }
+            return null;
+        }
+
+        @Override
+        public ExpressionType visitImport(Import node) {
+            if (!node.isResolved()) {
+                error(node, "Import " + node.path + " could not be resolved");
+                return null;
+            }
+            // het type van een geïmporteerde variabele volgt uit zijn waarde
+            for (int i = 0; i < node.names.size(); i++) {
+                ExpressionType type = node.values.get(i).accept(this);
+                variableTypes.set(node.names.get(i).slot, type);
+                if (globals != null) {
+                    globals.put(node.names.get(i).name, known(type));
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public ExpressionType visitStylerule(Stylerule rule) {
+            // push een nieuw frame voor de stylerule
+            pushFrame(rule.scopeSize);
+            // loop door alle kinderen van stylerule
+            checkBody(rule.body);
+            // pop het frame van de stylerule
+            popFrame();
+            return null;
+        }
+
+        @Override
+        public ExpressionType visitIfClause(IfClause ifClause) {
+            // controleer of de conditie van if-clause een boolean is
+            ExpressionType conditionType = evaluateExpression(ifClause.conditionalExpression);
+            if (conditionType != ExpressionType.BOOL) {
+                error(ifClause, "If-clause condition must be a boolean literal");
+            }
+            // push een nieuw frame voor de if-clause
+            pushFrame(ifClause.scopeSize);
+            // loop door alle kinderen van if-clause
+            checkBody(ifClause.body);
+            // pop het frame van de if-clause
+            popFrame();
+
+            // de else-clause heeft zijn eigen frame
+            if (ifClause.elseClause != null) {
+                ifClause.elseClause.accept(this);
+            }
+            return null;
+        }
+
+        @Override
+        public ExpressionType visitElseClause(ElseClause elseClause) {
+            // zelfde als de if-clause
+            pushFrame(elseClause.scopeSize);
+            checkBody(elseClause.body);
+            popFrame();
+            return null;
+        }
+
+        @Override
+        public ExpressionType visitDeclaration(Declaration declaration) {
+            // controleer of de waarde van de declaratie overeenkomt met het type van de property
+            ExpressionType type = evaluateExpression(declaration.expression);
+
+            // controleer of de property overeenkomt met het type van de waarde
+            if (declaration.property.name.equals("width")) {
+                if (type != ExpressionType.PIXEL) {
+                    error(declaration, "Only pixel literals can be assigned to width property");
+                }
+            } else if (declaration.property.name.equals("color") || declaration.property.name.equals("background-color")) {
+                if (type != ExpressionType.COLOR) {
+                    error(declaration, "Only color literals can be assigned to color property");
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public ExpressionType visitVariableAssignment(VariableAssignment child) {
+            // evalueer de expressie van de variabele toewijzing
+            ExpressionType type = evaluateExpression(child.expression);
+            // sla het type op in de slot van de variabele in het huidige frame
+            variableTypes.set(child.name.slot, type);
+            // met een cache wordt ook bijgehouden welk type elke globale variabele op dit punt heeft
+            if (globals != null && level == 0) {
+                globals.put(child.name.name, known(type));
+            }
+            return null;
+        }
+
+        // bepaal het type van de literals
+        @Override
+        public ExpressionType visitColorLiteral(ColorLiteral node) {
             return ExpressionType.COLOR;
-        } else if (expression instanceof PixelLiteral) {
+        }
+        @Override
+        public ExpressionType visitPixelLiteral(PixelLiteral node) {
             return ExpressionType.PIXEL;
-        } else if (expression instanceof ScalarLiteral) {
+        }
+        @Override
+        public ExpressionType visitScalarLiteral(ScalarLiteral node) {
             return ExpressionType.SCALAR;
-        } else if (expression instanceof PercentageLiteral) {
+        }
+        @Override
+        public ExpressionType visitPercentageLiteral(PercentageLiteral node) {
             return ExpressionType.PERCENTAGE;
-        } else if (expression instanceof BoolLiteral) {
+        }
+        @Override
+        public ExpressionType visitBoolLiteral(BoolLiteral node) {
             return ExpressionType.BOOL;
+        }
+
         // als de expressie een variabele referentie is
-        } else if (expression instanceof VariableReference) {
-            // zoek de variabele op in de scopes
-            String varName = ((VariableReference) expression).name;
-            // kijk eerst in de huidige scope
-            HashMap<String, ExpressionType> currentScope = variableTypes.peek();
-            // kijk of de variabele in de huidige scope zit
-            if (currentScope != null && currentScope.containsKey(varName)) {
-                return currentScope.get(varName);
-            }
-            // als de variabele niet in de huidige scope zit, kijk in de andere scopes
-            HashMap<String, ExpressionType> globalScope = variableTypes.getLast();
-            // loop door alle scopes
-            for (HashMap<String, ExpressionType> scope : variableTypes) {
-                // sla de huidige scope over
-                if (scope == currentScope) continue;
-                // kijk of de variabele in de scope zit
-                if (scope.containsKey(varName)) {
-                    // als we in de globale scope zitten, is de variabele toegankelijk
-                    if (scope == globalScope) {
-                        return scope.get(varName);
-                    }
-                }
+        @Override
+        public ExpressionType visitVariableReference(VariableReference reference) {
+            // onthoud welke globale variabelen het huidige statement leest, null als hij niet bestaat
+            if (globalsRead != null && (reference.depth == level || reference.depth < 0)) {
+                globalsRead.put(reference.name, reference.depth < 0
+                        ? null : known(variableTypes.get(reference.depth, reference.slot)));
+            }
+            // de Binder heeft de variabele al opgezocht in deze en de omliggende scopes
+            if (reference.depth >= 0) {
+                return variableTypes.get(reference.depth, reference.slot);
             }
             // als de variabele niet gevonden is, geef een foutmelding
-            expression.setError("Variable " + varName + " is not defined or this selector cannot access it");
+            error(reference, "Variable " + reference.name + " is not defined or this selector cannot access it");
             return null;
-        // als de expressie een operatie is
-        } else if (expression instanceof Operation) {
-            // evalueer de linker en rechter operand
-            Operation op = (Operation) expression;
-            // haal de linker en rechter expressies op
-            Expression leftExpr = op.lhs;
-            Expression rightExpr = op.rhs;
-            // evalueer de linker en rechter expressies
-            ExpressionType left = evaluateExpression(leftExpr);
-            ExpressionType right = evaluateExpression(rightExpr);
+        }
 
-            // als een van de types null is, return null
-            if (left == null || right == null) return null;
+        // bij + en - moeten de types gelijk zijn, zoals PIXEL + PIXEL
+        @Override
+        public ExpressionType visitAddOperation(AddOperation op) {
+            return checkAdditive(op);
+        }
+        @Override
+        public ExpressionType visitSubtractOperation(SubtractOperation op) {
+            return checkAdditive(op);
+        }
 
-            // kleuren kunnen niet gebruikt worden in operaties
-            if (left == ExpressionType.COLOR || right == ExpressionType.COLOR) {
-                expression.setError("Colors cannot be used in operations");
+        // bij * moet een van de types SCALAR zijn
+        // bijvoorbeeld: SCALAR * PIXEL or PIXEL * SCALAR
+        @Override
+        public ExpressionType visitMultiplyOperation(MultiplyOperation op) {
+            ExpressionType left = evaluateExpression(op.lhs);
+            ExpressionType right = evaluateExpression(op.rhs);
+            if (!checkOperands(op, left, right)) return null;
+
+            if (left != ExpressionType.SCALAR && right != ExpressionType.SCALAR) {
+                error(op, "At least one operand of * must be a scalar");
                 return null;
             }
+            if (left == ExpressionType.SCALAR) return right;
+            return left;
+        }
 
-            // bepaal het resultaat type op basis van de operatie
-            // bijvoorbeeld: bij + en - moeten de types gelijk zijn, zoals PIXEL + PIXEL
-            if (op instanceof AddOperation || op instanceof SubtractOperation) {
-                if (left != right) {
-                    expression.setError("Operands of + and - must be of the same type");
-                    return null;
-                }
-                return left;
-            // bij * moet een van de types SCALAR zijn
-            // bijvoorbeeld: SCALAR * PIXEL or PIXEL * SCALAR
-            } else if (op instanceof MultiplyOperation) {
-                if (left != ExpressionType.SCALAR && right != ExpressionType.SCALAR) {
-                    expression.setError("At least one operand of * must be a scalar");
-                    return null;
-                }
-                if (left == ExpressionType.SCALAR) return right;
-                return left;
-            // anders als het een onbekende operatie is, returnt hij null
-            } else {
+        private ExpressionType checkAdditive(Operation op) {
+            // evalueer de linker en rechter expressies
+            ExpressionType left = evaluateExpression(op.lhs);
+            ExpressionType right = evaluateExpression(op.rhs);
+            if (!checkOperands(op, left, right)) return null;
+
+            if (left != right) {
+                error(op, "Operands of + and - must be of the same type");
                 return null;
             }
+            return left;
+        }
+
+        private boolean checkOperands(Operation op, ExpressionType left, ExpressionType right) {
+            // als een van de types null is, is er al een fout gemeld
+            if (left == null || right == null) return false;
+
+            // booleans kunnen niet gebruikt worden in operaties
+            // kleuren wel: kleur + kleur, kleur - kleur en kleur * scalar
+            if (left == ExpressionType.BOOL || right == ExpressionType.BOOL) {
+                error(op, "Booleans cannot be used in operations");
+                return false;
+            }
+            return true;
         }
-        // als het een onbekende expressie is, returnt hij null
-        return null;
     }
 }
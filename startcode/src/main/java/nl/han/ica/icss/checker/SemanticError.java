@@ -2,11 +2,22 @@ package nl.han.ica.icss.checker;
 
 public class SemanticError {
 	public String description;
+	// line starting at 1 and column starting at 0, like ANTLR reports them; -1 when not known
+	public int line = -1;
+	public int column = -1;
 
 	public SemanticError(String description) {
 		this.description = description;
 	}
+	public SemanticError(String description, int line, int column) {
+		this.description = description;
+		this.line = line;
+		this.column = column;
+	}
 	public String toString() {
-		return "ERROR: " + description;
+		if (line < 0) {
+			return "ERROR: " + description;
+		}
+		return "ERROR: line " + line + ":" + column + " " + description;
 	}
 }
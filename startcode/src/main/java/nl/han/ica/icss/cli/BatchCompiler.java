@@ -0,0 +1,416 @@
+package nl.han.ica.icss.cli;
+
+import nl.han.ica.icss.CompilationResult;
+import nl.han.ica.icss.Compiler;
+import nl.han.ica.icss.ModuleGraph;
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.cache.CompilationCache;
+import nl.han.ica.icss.generator.SourceMapBuilder;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Headless entry point that compiles whole directory trees of .icss files without the GUI.
+ * Every file goes through parse, check, transform and generate; the resulting .css file is
+ * written next to its input. With --source-map a .css.map file is written as well.
+ * With --cache DIR the CSS of every input is kept in a CompilationCache, and unchanged
+ * inputs are not compiled again. With --source-map the cache keeps the checked AST instead,
+ * from which the CSS and the map are generated without parsing and checking. The cache only
+ * keeps files without imports.
+ *
+ * Files that import each other are compiled through a ModuleGraph: an imported file is parsed
+ * and checked once for all its importers, and independent files compile in parallel.
+ *
+ * Usage: BatchCompiler [--threads N] [--quiet] [--source-map] [--cache DIR [--cache-size MB]] (directory | glob)...
+ */
+public class BatchCompiler {
+
+    public static final int EXIT_OK = 0;
+    public static final int EXIT_COMPILE_ERRORS = 1;
+    public static final int EXIT_USAGE = 2;
+
+    private static final String SOURCE_EXTENSION = ".icss";
+    private static final String TARGET_EXTENSION = ".css";
+    private static final String MAP_EXTENSION = ".map";
+    private static final long DEFAULT_CACHE_MEGABYTES = 256;
+
+    private final Compiler compiler = new Compiler();
+    private final int threads;
+    private final boolean quiet;
+    private final boolean sourceMaps;
+    private final CompilationCache cache;
+    private final PrintStream out;
+
+    public BatchCompiler(int threads, boolean quiet, PrintStream out) {
+        this(threads, quiet, false, null, out);
+    }
+    public BatchCompiler(int threads, boolean quiet, boolean sourceMaps, CompilationCache cache, PrintStream out) {
+        this.threads = threads;
+        this.quiet = quiet;
+        this.sourceMaps = sourceMaps;
+        this.cache = cache;
+        this.out = out;
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args, System.out));
+    }
+
+    public static int run(String[] args, PrintStream out) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean quiet = false;
+        boolean sourceMaps = false;
+        String cacheDirectory = null;
+        long cacheMegabytes = DEFAULT_CACHE_MEGABYTES;
+        List<String> inputs = new ArrayList<>();
+
+        // lees de opties uit, alles wat geen optie is, is een map of glob
+        for (int i = 0; i < args.length; i++) {
+            if (isValued(args[i]) && i + 1 == args.length) {
+                return usage(out, "Missing value for " + args[i]);
+            } else if (args[i].equals("--threads")) {
+                try {
+                    threads = Integer.parseInt(args[++i]);
+                } catch (NumberFormatException e) {
+                    return usage(out, "Invalid thread count: " + args[i]);
+                }
+            } else if (args[i].equals("--quiet")) {
+                quiet = true;
+            } else if (args[i].equals("--source-map")) {
+                sourceMaps = true;
+            } else if (args[i].equals("--cache")) {
+                cacheDirectory = args[++i];
+            } else if (args[i].equals("--cache-size")) {
+                try {
+                    cacheMegabytes = Long.parseLong(args[++i]);
+                } catch (NumberFormatException e) {
+                    return usage(out, "Invalid cache size: " + args[i]);
+                }
+            } else if (args[i].startsWith("--")) {
+                return usage(out, "Unknown option: " + args[i]);
+            } else {
+                inputs.add(args[i]);
+            }
+        }
+        if (threads < 1) {
+            return usage(out, "Invalid thread count: " + threads);
+        }
+        if (inputs.isEmpty()) {
+            return usage(out, "No input given");
+        }
+
+        // overlappende invoer zoals src src/**.icss mag een bestand niet twee keer tegelijk laten schrijven
+        Map<Path, Path> files = new LinkedHashMap<>();
+        CompilationCache cache = null;
+        try {
+            for (String input : inputs) {
+                for (Path file : findSources(input)) {
+                    // het eerste pad waarmee een bestand genoemd wordt, komt in de uitvoer
+                    files.putIfAbsent(file.toAbsolutePath().normalize(), file);
+                }
+            }
+            if (cacheDirectory != null) {
+                cache = new CompilationCache(Paths.get(cacheDirectory), cacheMegabytes * 1024 * 1024);
+            }
+        } catch (IOException e) {
+            out.println("ERROR: " + e.getMessage());
+            return EXIT_USAGE;
+        }
+        return new BatchCompiler(threads, quiet, sourceMaps, cache, out).compileAll(new ArrayList<>(files.values()));
+    }
+
+    // de opties die een waarde verwachten
+    private static boolean isValued(String option) {
+        return option.equals("--threads") || option.equals("--cache") || option.equals("--cache-size");
+    }
+
+    /**
+     * Compiles all files in parallel and prints a per-file line plus a summary.
+     * @param files the .icss files to compile
+     * @return EXIT_OK when every file compiled, EXIT_COMPILE_ERRORS otherwise
+     */
+    public int compileAll(List<Path> files) {
+        long start = System.nanoTime();
+        List<FileResult> results = new ArrayList<>();
+        ModuleGraph modules;
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            // een invoer die al eens gecompileerd is, komt zonder parsen uit de cache
+            List<FileResult> cached = invokeAll(pool, files, this::fromCache);
+            List<Path> misses = new ArrayList<>();
+            for (int i = 0; i < files.size(); i++) {
+                if (cached.get(i) == null) {
+                    misses.add(files.get(i));
+                }
+            }
+
+            // de rest gaat door de modulegraaf: een geïmporteerd bestand wordt één keer gecompileerd,
+            // en modules die niet van elkaar afhangen worden tegelijk gecompileerd; elk bestand wordt
+            // geschreven zodra het klaar is, waarna de graaf zijn AST loslaat
+            modules = new ModuleGraph(compiler, pool);
+            Map<Path, FileResult> written = new ConcurrentHashMap<>();
+            modules.compileEach(misses, (file, module) -> written.put(file, write(file, module)));
+
+            for (int i = 0; i < files.size(); i++) {
+                results.add(cached.get(i) != null ? cached.get(i) : written.get(files.get(i)));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            out.println("ERROR: interrupted");
+            return EXIT_COMPILE_ERRORS;
+        } catch (ExecutionException e) {
+            out.println("ERROR: " + e.getCause());
+            return EXIT_COMPILE_ERRORS;
+        } catch (CompletionException e) {
+            out.println("ERROR: " + e.getCause());
+            return EXIT_COMPILE_ERRORS;
+        } finally {
+            pool.shutdown();
+        }
+        long wallNanos = System.nanoTime() - start;
+
+        // rapporteer per bestand en tel de fouten op
+        int failed = 0;
+        long totalBytes = 0;
+        for (FileResult result : results) {
+            totalBytes += result.bytes;
+            if (!result.errors.isEmpty()) {
+                failed++;
+                out.println("FAIL " + result.file + " (" + formatMillis(result.nanos) + ")");
+                for (String error : result.errors) {
+                    out.println("  " + error);
+                }
+            } else if (!quiet) {
+                out.println("OK   " + result.file + " (" + result.bytes + " bytes, "
+                        + formatMillis(result.nanos) + ", " + formatThroughput(result.bytes, result.nanos) + ")");
+            }
+        }
+
+        double seconds = wallNanos / 1e9;
+        out.println(String.format("%d files, %d failed, %d bytes in %s on %d threads: %.1f files/s, %s",
+                results.size(), failed, totalBytes, formatMillis(wallNanos), threads,
+                seconds > 0 ? results.size() / seconds : 0.0, formatThroughput(totalBytes, wallNanos)));
+
+        out.println(String.format("SLL parse fallbacks to LL: %d of %d",
+                compiler.getSllFallbackCount(), compiler.getParseCount()));
+        out.println(String.format("Modules compiled: %d", modules.getModuleCount()));
+        if (cache != null) {
+            out.println(String.format("Cache hits: %d of %d",
+                    cache.getHitCount(), cache.getHitCount() + cache.getMissCount()));
+        }
+
+        return failed == 0 ? EXIT_OK : EXIT_COMPILE_ERRORS;
+    }
+
+    // voert de functie voor elk bestand uit op de pool, de resultaten in dezelfde volgorde
+    private static List<FileResult> invokeAll(ForkJoinPool pool, List<Path> files, Function<Path, FileResult> function)
+            throws InterruptedException, ExecutionException {
+        List<Callable<FileResult>> tasks = files.stream()
+                .map(file -> (Callable<FileResult>) () -> function.apply(file))
+                .collect(Collectors.toList());
+        List<FileResult> results = new ArrayList<>();
+        for (Future<FileResult> future : pool.invokeAll(tasks)) {
+            results.add(future.get());
+        }
+        return results;
+    }
+
+    // de CSS uit de cache, of null als het bestand gecompileerd moet worden
+    private FileResult fromCache(Path file) {
+        if (cache == null) {
+            return null;
+        }
+        long start = System.nanoTime();
+        try {
+            byte[] data = Files.readAllBytes(file);
+            // alleen bestanden zonder imports komen in de cache, dus een hit hangt van geen ander bestand af
+            if (sourceMaps) {
+                // voor de source map is de boom nodig; die hoeft alleen nog geëvalueerd te worden
+                AST ast = cache.getAST(data);
+                if (ast == null) {
+                    return null;
+                }
+                CompilationResult result = compiler.checked(ast);
+                compiler.transform(result);
+                writeCss(file, result);
+            } else {
+                String css = cache.get(data);
+                if (css == null) {
+                    return null;
+                }
+                Files.writeString(targetOf(file), css, StandardCharsets.UTF_8);
+            }
+            return new FileResult(file, data.length, System.nanoTime() - start, new ArrayList<>());
+        } catch (IOException e) {
+            // de modulegraaf leest het bestand opnieuw en meldt de fout
+            return null;
+        }
+    }
+
+    private FileResult write(Path file, ModuleGraph.Module module) {
+        long start = System.nanoTime();
+        CompilationResult result = module.getResult();
+        List<String> errors = new ArrayList<>();
+        long bytes = module.getInput() != null ? module.getInput().length : 0;
+        try {
+            if (result.isTransformed()) {
+                boolean cached = cache != null && module.getImports().isEmpty();
+                if (cached && !sourceMaps) {
+                    // voor de cache is de CSS ook als String nodig
+                    StringBuilder css = new StringBuilder();
+                    compiler.generate(result, css);
+                    Files.writeString(targetOf(file), css, StandardCharsets.UTF_8);
+                    cache.put(module.getInput(), css.toString());
+                } else {
+                    writeCss(file, result);
+                    if (cached) {
+                        cache.putAST(module.getInput(), module.getCheckedAST());
+                    }
+                }
+            }
+            errors.addAll(result.getErrors());
+        } catch (IOException e) {
+            errors.add("ERROR: " + e.getMessage());
+        }
+        return new FileResult(file, bytes, module.getNanos() + System.nanoTime() - start, errors);
+    }
+
+    // schrijf de CSS direct naar het bestand in plaats van eerst een String op te bouwen, met de source map ernaast
+    private void writeCss(Path file, CompilationResult result) throws IOException {
+        Path target = targetOf(file);
+        // de source map wordt gevuld terwijl de CSS geschreven wordt
+        SourceMapBuilder sourceMap = sourceMaps
+                ? new SourceMapBuilder(target.getFileName().toString(), file.getFileName().toString())
+                : null;
+        try (Writer writer = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+            compiler.generate(result, writer, sourceMap);
+            if (sourceMap != null) {
+                writer.write("/*# sourceMappingURL=" + mapOf(target).getFileName() + " */\n");
+            }
+        }
+        if (sourceMap != null) {
+            Files.writeString(mapOf(target), sourceMap.toJson(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Determines the .css file that belongs to an .icss file
+     * @param source the .icss file
+     * @return the file in the same directory with the .css extension
+     * @throws IllegalArgumentException when the file does not have the .icss extension
+     */
+    public static Path targetOf(Path source) {
+        String name = source.getFileName().toString();
+        if (!name.endsWith(SOURCE_EXTENSION)) {
+            throw new IllegalArgumentException("Not an .icss file: " + source);
+        }
+        return source.resolveSibling(name.substring(0, name.length() - SOURCE_EXTENSION.length()) + TARGET_EXTENSION);
+    }
+
+    /**
+     * Determines the source map file that belongs to a .css file
+     * @param target the .css file
+     * @return the file in the same directory with .map added to the name
+     */
+    public static Path mapOf(Path target) {
+        return target.resolveSibling(target.getFileName() + MAP_EXTENSION);
+    }
+
+    /**
+     * Expands a directory or glob into the .icss files it contains.
+     * @param input a directory, a single file or a glob like styles/**.icss
+     * @return the matching .icss files, sorted by path
+     * @throws IOException when the input does not exist, or is a file without the .icss extension
+     */
+    public static List<Path> findSources(String input) throws IOException {
+        int wildcard = indexOfWildcard(input);
+        if (wildcard < 0) {
+            Path path = Paths.get(input);
+            if (Files.isRegularFile(path)) {
+                // een los genoemd bestand moet ook een .icss-bestand zijn, anders overschrijft de CSS iets anders
+                if (!input.endsWith(SOURCE_EXTENSION)) {
+                    throw new IOException("Not an .icss file: " + input);
+                }
+                return List.of(path);
+            }
+            if (!Files.isDirectory(path)) {
+                throw new IOException("No such file or directory: " + input);
+            }
+            return walk(path, p -> p.toString().endsWith(SOURCE_EXTENSION));
+        }
+
+        // zoek vanaf de map die voor het eerste wildcard-teken staat
+        int separator = input.lastIndexOf('/', wildcard);
+        Path base = separator < 0 ? Paths.get(".") : Paths.get(input.substring(0, Math.max(separator, 1)));
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + input);
+        Path prefix = separator < 0 ? Paths.get("") : base;
+        return walk(base, p -> p.toString().endsWith(SOURCE_EXTENSION)
+                && matcher.matches(prefix.resolve(base.relativize(p))));
+    }
+
+    private static List<Path> walk(Path base, Predicate<Path> filter) throws IOException {
+        try (Stream<Path> stream = Files.walk(base)) {
+            return stream.filter(Files::isRegularFile).filter(filter).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static int indexOfWildcard(String input) {
+        for (int i = 0; i < input.length(); i++) {
+            if ("*?[{".indexOf(input.charAt(i)) >= 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int usage(PrintStream out, String message) {
+        out.println(message);
+        out.println("Usage: BatchCompiler [--threads N] [--quiet] [--source-map] [--cache DIR [--cache-size MB]] (directory | glob)...");
+        return EXIT_USAGE;
+    }
+
+    private static String formatMillis(long nanos) {
+        return String.format("%.2f ms", nanos / 1e6);
+    }
+
+    private static String formatThroughput(long bytes, long nanos) {
+        double seconds = nanos / 1e9;
+        return String.format("%.2f MB/s", seconds > 0 ? bytes / seconds / (1024 * 1024) : 0.0);
+    }
+
+    private static class FileResult {
+        final Path file;
+        final long bytes;
+        final long nanos;
+        final List<String> errors;
+
+        FileResult(Path file, long bytes, long nanos, List<String> errors) {
+            this.file = file;
+            this.bytes = bytes;
+            this.nanos = nanos;
+            this.errors = errors;
+        }
+    }
+}
@@ -0,0 +1,446 @@
+package nl.han.ica.icss.cli;
+
+import nl.han.ica.icss.Compiler;
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.ast.ASTNode;
+import nl.han.ica.icss.ast.Import;
+import nl.han.ica.icss.ast.Literal;
+import nl.han.ica.icss.binding.Binder;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Long-running mode that compiles every .icss file in the given directories once and then
+ * recompiles only the files that change. Each file keeps its own Pipeline, so an edit only
+ * reparses the statements that changed, and all pipelines share one Compiler and so the
+ * warm ANTLR parser of this thread.
+ *
+ * File events are coalesced: after the first event, events keep being collected until none
+ * arrived for a short quiet period, and then every changed file is compiled once. The
+ * reported latency runs from the moment the first event for a file was received until its
+ * CSS is written, so it includes that quiet period; the compile time is reported next to it.
+ *
+ * Imports are resolved with the globals of the last compilation of the imported file. The
+ * watcher remembers which files import which, so a change also recompiles every file that
+ * imports the changed one, directly or not, after the files it imports.
+ *
+ * Usage: WatchCompiler [--quiet] directory...
+ */
+public class WatchCompiler implements Closeable {
+
+    private static final String SOURCE_EXTENSION = ".icss";
+    // zo lang moet het stil zijn voordat een reeks events verwerkt wordt; een editor schrijft een
+    // bestand meestal met een paar events vlak na elkaar
+    private static final long QUIET_MILLIS = 10;
+    // de mediaan wordt over de laatste zoveel wijzigingen berekend
+    private static final int LATENCY_SAMPLES = 1024;
+
+    private final List<Path> roots;
+    private final boolean quiet;
+    private final PrintStream out;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+    private final Compiler compiler = new Compiler();
+    private final Map<Path, Pipeline> pipelines = new HashMap<>();
+    // de globale variabelen van elk bestand dat zonder fouten gecompileerd is
+    private final Map<Path, Map<String, Literal>> globals = new HashMap<>();
+    // per bestand de bestanden die het importeert, en omgekeerd de bestanden die het importeren
+    private final Map<Path, List<Path>> imports = new HashMap<>();
+    private final Map<Path, Set<Path>> importers = new HashMap<>();
+
+    // tijd van het eerste event van een wijziging tot de CSS geschreven is, en de tijd van het
+    // compileren zelf, in nanoseconden
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+    private final long[] compileTimes = new long[LATENCY_SAMPLES];
+    private long changeCount = 0;
+
+    public WatchCompiler(List<Path> roots, boolean quiet, PrintStream out) throws IOException {
+        this.roots = roots;
+        this.quiet = quiet;
+        this.out = out;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        for (Path root : roots) {
+            register(root);
+        }
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args, System.out));
+    }
+
+    public static int run(String[] args, PrintStream out) {
+        boolean quiet = false;
+        List<Path> roots = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.equals("--quiet")) {
+                quiet = true;
+            } else if (arg.startsWith("--")) {
+                return usage(out, "Unknown option: " + arg);
+            } else if (!Files.isDirectory(Paths.get(arg))) {
+                return usage(out, "No such directory: " + arg);
+            } else {
+                roots.add(Paths.get(arg));
+            }
+        }
+        if (roots.isEmpty()) {
+            return usage(out, "No input given");
+        }
+
+        try (WatchCompiler watcher = new WatchCompiler(roots, quiet, out)) {
+            watcher.compileAll();
+            out.println("Watching for changes...");
+            watcher.watch();
+        } catch (IOException e) {
+            out.println("ERROR: " + e.getMessage());
+            return BatchCompiler.EXIT_USAGE;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return BatchCompiler.EXIT_OK;
+    }
+
+    /**
+     * Compiles all .icss files below the roots, which also warms up the parser.
+     */
+    public void compileAll() throws IOException {
+        // geen events, dus ook geen latency
+        Map<Path, Long> files = new LinkedHashMap<>();
+        for (Path root : roots) {
+            for (Path file : BatchCompiler.findSources(root.toString())) {
+                files.put(keyOf(file), null);
+            }
+        }
+        compileChanged(files);
+    }
+
+    /**
+     * Compiles changed files until the watcher is closed.
+     */
+    public void watch() throws IOException, InterruptedException {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                // verzamel events tot het even stil is, zodat een bestand per reeks één keer gecompileerd wordt;
+                // per bestand onthouden we wanneer het eerste event binnenkwam
+                Map<Path, Long> changed = new LinkedHashMap<>();
+                while (key != null) {
+                    collect(key, changed, System.nanoTime());
+                    key = watchService.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                if (changed.isEmpty()) {
+                    continue;
+                }
+                compileChanged(changed);
+                out.println(String.format("Median change-to-CSS latency: %.2f ms (compiling %.2f ms, quiet period %d ms) over %d changes",
+                        getMedianLatencyMillis(), getMedianCompileMillis(), QUIET_MILLIS, changeCount));
+            }
+        } catch (ClosedWatchServiceException e) {
+            // gesloten via close(), dan stopt het kijken
+        }
+    }
+
+    /**
+     * @return the median time from the first event of a change until the CSS of the file was
+     * written, over the last changes
+     */
+    public double getMedianLatencyMillis() {
+        return median(latencies);
+    }
+
+    /**
+     * @return the median time that compiling and writing a changed file took, over the last changes
+     */
+    public double getMedianCompileMillis() {
+        return median(compileTimes);
+    }
+
+    private double median(long[] samples) {
+        int count = (int) Math.min(changeCount, LATENCY_SAMPLES);
+        if (count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        return sorted[count / 2] / 1e6;
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    private void collect(WatchKey key, Map<Path, Long> changed, long received) throws IOException {
+        Path directory = directories.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // events gemist: controleer alles opnieuw
+                for (Path root : roots) {
+                    for (Path file : BatchCompiler.findSources(root.toString())) {
+                        changed.putIfAbsent(keyOf(file), received);
+                    }
+                }
+                continue;
+            }
+            Path path = keyOf(directory.resolve((Path) event.context()));
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                // een nieuwe map wordt ook bekeken, en de bestanden die er al in staan gecompileerd
+                register(path);
+                for (Path file : BatchCompiler.findSources(path.toString())) {
+                    changed.putIfAbsent(keyOf(file), received);
+                }
+            } else if (path.toString().endsWith(SOURCE_EXTENSION)) {
+                if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                    // blijft in changed, zodat de bestanden die het importeren opnieuw gecompileerd worden
+                    pipelines.remove(path);
+                    globals.remove(path);
+                    setImports(path, List.of());
+                    // de gegenereerde CSS en source map horen bij het verwijderde bestand
+                    if (isWatched(path)) {
+                        Path target = BatchCompiler.targetOf(path);
+                        Files.deleteIfExists(target);
+                        Files.deleteIfExists(BatchCompiler.mapOf(target));
+                    }
+                }
+                changed.putIfAbsent(path, received);
+            }
+        }
+        if (!key.reset()) {
+            directories.remove(key);
+        }
+    }
+
+    // compileer de gewijzigde bestanden en alle bestanden die ze (via andere) importeren
+    private void compileChanged(Map<Path, Long> changed) {
+        Batch batch = new Batch(changed);
+        for (Path file : changed.keySet()) {
+            addWithImporters(file, batch.pending);
+        }
+        for (Path file : batch.pending) {
+            if (Files.isRegularFile(file)) {
+                compile(file, batch);
+            }
+        }
+    }
+
+    private void addWithImporters(Path file, Set<Path> pending) {
+        if (pending.add(file)) {
+            for (Path importer : importers.getOrDefault(file, Set.of())) {
+                addWithImporters(importer, pending);
+            }
+        }
+    }
+
+    private void compile(Path file, Batch batch) {
+        if (!batch.done.add(file)) {
+            return;
+        }
+        try {
+            compileFile(file, batch);
+        } catch (IOException e) {
+            // bijvoorbeeld verwijderd tijdens het compileren; de volgende wijziging probeert het opnieuw
+            globals.remove(file);
+            fail(file, List.of("ERROR: " + e.getMessage()));
+        }
+    }
+
+    private void compileFile(Path file, Batch batch) throws IOException {
+        long start = System.nanoTime();
+        String input = Files.readString(file, StandardCharsets.UTF_8);
+
+        // elk bestand houdt zijn eigen pipeline, zodat alleen de gewijzigde statements opnieuw geparsed worden
+        Pipeline pipeline = pipelines.computeIfAbsent(file, f -> new Pipeline(compiler));
+        pipeline.parseString(input);
+        if (!pipeline.isParsed()) {
+            globals.remove(file);
+            fail(file, pipeline.getErrors());
+            return;
+        }
+
+        // imports staan altijd bovenaan de stylesheet, relatief aan het importerende bestand
+        List<Import> fileImports = new ArrayList<>();
+        List<Path> targets = new ArrayList<>();
+        for (ASTNode child : pipeline.getAST().root.body) {
+            if (!(child instanceof Import)) break;
+            fileImports.add((Import) child);
+            targets.add(keyOf(file.resolveSibling(((Import) child).path)));
+        }
+        setImports(file, targets);
+
+        // compileer eerst wat dit bestand importeert, als dat in deze reeks zit of nog nooit gecompileerd is
+        batch.path.add(file);
+        for (Path imported : targets) {
+            int index = batch.path.indexOf(imported);
+            if (index >= 0) {
+                // het bestand importeert zichzelf via de bestanden op het pad
+                List<Path> cycle = new ArrayList<>(batch.path.subList(index, batch.path.size()));
+                cycle.add(imported);
+                for (Path member : batch.path.subList(index, batch.path.size())) {
+                    batch.cycles.put(member, cycle);
+                }
+            } else if (Files.isRegularFile(imported) && (batch.pending.contains(imported) || !pipelines.containsKey(imported))) {
+                compile(imported, batch);
+            }
+        }
+        batch.path.remove(batch.path.size() - 1);
+
+        List<Path> cycle = batch.cycles.get(file);
+        if (cycle != null) {
+            StringBuilder names = new StringBuilder();
+            for (Path member : cycle) {
+                names.append(names.length() == 0 ? "" : " -> ").append(member.getFileName());
+            }
+            globals.remove(file);
+            fail(file, List.of("ERROR: Import cycle: " + names));
+            return;
+        }
+
+        // een import van een bestand dat niet compileert blijft onopgelost, wat de checker meldt
+        for (int i = 0; i < fileImports.size(); i++) {
+            Map<String, Literal> imported = globals.get(targets.get(i));
+            if (imported != null) {
+                fileImports.get(i).resolve(imported);
+            } else {
+                fileImports.get(i).unresolve();
+            }
+        }
+        new Binder().bind(pipeline.getAST());
+
+        if (pipeline.check()) {
+            pipeline.transform();
+            globals.put(file, pipeline.getGlobals());
+            // een geïmporteerd bestand buiten de mappen wordt alleen voor zijn variabelen gecompileerd
+            if (isWatched(file)) {
+                try (Writer writer = Files.newBufferedWriter(BatchCompiler.targetOf(file), StandardCharsets.UTF_8)) {
+                    pipeline.generate(writer);
+                }
+            }
+            long written = System.nanoTime();
+            Long received = batch.receivedFor(file);
+            if (received != null) {
+                int sample = (int) (changeCount++ % LATENCY_SAMPLES);
+                latencies[sample] = written - received;
+                compileTimes[sample] = written - start;
+            }
+            if (!quiet) {
+                out.println("OK   " + file + " (" + String.format("%.2f ms", (written - start) / 1e6) + ")");
+            }
+        } else {
+            globals.remove(file);
+            fail(file, pipeline.getErrors());
+        }
+    }
+
+    private void fail(Path file, List<String> errors) {
+        out.println("FAIL " + file);
+        for (String error : errors) {
+            out.println("  " + error);
+        }
+    }
+
+    // werk de imports van het bestand bij, en de omgekeerde index mee
+    private void setImports(Path file, List<Path> targets) {
+        for (Path old : imports.getOrDefault(file, List.of())) {
+            Set<Path> files = importers.get(old);
+            files.remove(file);
+            if (files.isEmpty()) {
+                importers.remove(old);
+            }
+        }
+        if (targets.isEmpty()) {
+            imports.remove(file);
+            return;
+        }
+        imports.put(file, targets);
+        for (Path target : targets) {
+            importers.computeIfAbsent(target, f -> new HashSet<>()).add(file);
+        }
+    }
+
+    private boolean isWatched(Path file) {
+        for (Path root : roots) {
+            if (file.startsWith(keyOf(root))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Path keyOf(Path file) {
+        return file.toAbsolutePath().normalize();
+    }
+
+    // de toestand van één reeks compilaties
+    private static class Batch {
+        // per gewijzigd bestand wanneer het eerste event binnenkwam; null zonder events
+        final Map<Path, Long> received;
+        // het eerste event van de reeks, voor de bestanden die opnieuw gecompileerd worden omdat ze importeren
+        final Long first;
+        // de gewijzigde bestanden en de bestanden die ze importeren
+        final Set<Path> pending = new LinkedHashSet<>();
+        final Set<Path> done = new HashSet<>();
+        // de bestanden die nu op hun imports wachten, om cycles te vinden
+        final List<Path> path = new ArrayList<>();
+        final Map<Path, List<Path>> cycles = new HashMap<>();
+
+        Batch(Map<Path, Long> received) {
+            this.received = received;
+            Long first = null;
+            for (Long time : received.values()) {
+                if (time != null && (first == null || time - first < 0)) {
+                    first = time;
+                }
+            }
+            this.first = first;
+        }
+
+        Long receivedFor(Path file) {
+            Long time = received.get(file);
+            return time != null ? time : first;
+        }
+    }
+
+    // bekijk de map en alle mappen eronder
+    private void register(Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) throws IOException {
+                WatchKey key = directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                directories.put(key, directory);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static int usage(PrintStream out, String message) {
+        out.println(message);
+        out.println("Usage: WatchCompiler [--quiet] directory...");
+        return BatchCompiler.EXIT_USAGE;
+    }
+}
@@ -2,108 +2,313 @@ package nl.han.ica.icss.generator;
 
 
 import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.ast.literals.*;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.operations.MultiplyOperation;
+import nl.han.ica.icss.ast.operations.SubtractOperation;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
 
 public class Generator {
     // indentie voor geneste regels
     private static final String INDENT = "  ";
+    // vooraf opgebouwde indentaties, zodat er per regel geen nieuwe String nodig is
+    private static final String[] INDENTS = new String[16];
+    // hexadecimale cijfers voor het schrijven van kleuren
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
 
-	public String generate(AST ast) {
-        // start met het genereren van de stylesheet
-        return generateStylesheet(ast.root, 0);
-	}
-
-    // genereer de stylesheet door alle stylerules te verwerken
-    private String generateStylesheet(Stylesheet node, int indentLevel) {
-        // bouw de CSS-string op
-        StringBuilder sb = new StringBuilder();
-        // loop door alle kinderen van de stylesheet
-        for (Object child : node.getChildren()) {
-            // als het kind een stylerule is, genereer de stylerule
-            if (child instanceof Stylerule) {
-                // voeg de gegenereerde stylerule toe aan de CSS-string
-                sb.append(generateStylerule((Stylerule) child, indentLevel));
-            }
+    static {
+        for (int i = 0; i < INDENTS.length; i++) {
+            INDENTS[i] = INDENT.repeat(i);
         }
-        // return de volledige CSS-string
-        return sb.toString();
     }
 
-    // genereer een stylerule met zijn selectors en body
-    private String generateStylerule(Stylerule node, int indentLevel) {
-        // bepaal de indentatie voor de huidige regel
-        String indent = INDENT.repeat(indentLevel);
-        // bouw de CSS-string voor de stylerule op
-        StringBuilder css = new StringBuilder(indent);
-
-        // voeg alle selectors toe, gescheiden door komma's
-        // wat doet de isFirstSelector variabele hier?
-        // Het zorgt ervoor dat er geen komma voor de eerste selector wordt toegevoegd.
-        boolean isFirstSelector = true;
-        // loop door alle selectors van de stylerule
-        for (Object selector : node.selectors) {
-            // als het niet de eerste selector is, voeg een komma en spatie toe
-            if (!isFirstSelector) css.append(", ");
-            // anders, zet de vlag op false
-            isFirstSelector = false;
-            // voeg de selector toe aan de CSS-string
-            css.append(selector.toString());
-        }
-
-        // voeg de openingshaakje toe voor de body van de stylerule
-        css.append(" {\n");
-        // loop door alle body-elementen van de stylerule
-        for (Object body : node.body) {
-            // als het body-element een declaratie is, genereer de declaratie
-            if (body instanceof Declaration) {
-                // voeg de gegenereerde declaratie toe aan de CSS-string
-                css.append(generateDeclaration((Declaration) body, indentLevel + 1));
-            }
-        }
-        // voeg de sluitingshaakje toe voor de stylerule
-        css.append(indent).append("}\n");
-        // return de volledige CSS-string voor de stylerule
+	public String generate(AST ast) {
+        // alle regels worden in één gedeelde buffer geschreven
+        StringBuilder css = new StringBuilder();
+        try {
+            generate(ast, css);
+        } catch (IOException e) {
+            // een StringBuilder gooit nooit een IOException
+            throw new UncheckedIOException(e);
+        }
+        // return de volledige CSS-string
         return css.toString();
+	}
+
+    /**
+     * Streams the CSS for the AST straight into the given output, so the complete
+     * CSS never has to exist in memory when writing to a Writer.
+     * @param ast the transformed AST
+     * @param css the output, e.g. a StringBuilder or a (buffered) Writer
+     */
+    public void generate(AST ast, Appendable css) throws IOException {
+        generate(ast, css, null);
     }
 
-    private String generateDeclaration(Declaration node, int indentLevel) {
-        // controleer of de declaratie en zijn eigenschappen niet null zijn
-        if (node == null || node.property == null) return "";
-        // anders bepaal de indentatie voor de huidige regel
-        String indent = INDENT.repeat(indentLevel);
-        // return de CSS-string voor de declaratie in het juiste formaat
-        return indent + node.property.name + ": " + literalToString(node.expression) + ";\n";
+    /**
+     * Streams the CSS like generate(ast, css) and adds a mapping to the source map for
+     * every rule and declaration that has a source position.
+     * @param sourceMap receives the mappings, or null for no source map
+     */
+    public void generate(AST ast, Appendable css, SourceMapBuilder sourceMap) throws IOException {
+        try {
+            // start met het genereren van de stylesheet
+            ast.root.accept(new CssWriter(css, sourceMap, ast.positions));
+        } catch (UncheckedIOException e) {
+            // de visitor kan geen IOException gooien, dus die wordt hier weer uitgepakt
+            throw e.getCause();
+        }
     }
 
-    // converteer een expressie naar een stringrepresentatie
-    private String literalToString(Expression expr) {
-        // controleer of de expressie null is
-        if (expr == null) return "";
-        // haal de raw string van de expressie op
-        String raw = expr.toString();
-        // bepaal het type van de expressie en formatteer deze overeenkomstig
-        // bijvoorbeeld: Pixel literal [ 100 ] wordt 100px
-        // de replaceAll verwijdert de de volgende strings en tekens:
-        // Pixel literal, Percentage literal, Color literal, Scalar literal, Bool literal, VariableReference
-        // en de vierkante haken [], ronde haken () en verticale strepen |
-        if (raw.contains("Pixel literal")) {
-            return raw.replaceAll("Pixel literal|\\[|\\]|\\(|\\)|\\|", "").trim() + "px";
-        }
-        if (raw.contains("Percentage literal")) {
-            return raw.replaceAll("Percentage literal|\\[|\\]|\\(|\\)|\\|", "").trim() + "%";
-        }
-        if (raw.contains("Color literal")) {
-            return raw.replaceAll("Color literal|\\[|\\]|\\(|\\)|\\|", "").trim();
-        }
-        if (raw.contains("Scalar literal")) {
-            return raw.replaceAll("Scalar literal|\\[|\\]|\\(|\\)|\\|", "").trim();
-        }
-        if (raw.contains("Bool literal")) {
-            return raw.replaceAll("Bool literal|\\[|\\]|\\(|\\)|\\|", "").trim();
-        }
-        if (raw.contains("VariableReference")) {
-            return raw.replaceAll("VariableReference|\\[|\\]|\\(|\\)|\\|", "").trim();
-        }
-        // als het geen van de bovenstaande types is, return de raw string zonder speciale tekens
-        return raw.replaceAll("\\[|\\]|\\(|\\)|\\|", "").trim();
+    // schrijft de CSS voor elke node die hij bezoekt
+    private static class CssWriter extends BaseASTVisitor<Void> {
+        private final Appendable css;
+        private int indentLevel = 0;
+        // alleen bij een source map wordt bijgehouden waar in de output we zijn
+        private final SourceMapBuilder sourceMap;
+        private final SourcePositions positions;
+        private int line = 0;
+        private int column = 0;
+        // genoeg voor de cijfers van elke int
+        private final char[] digits = new char[10];
+
+        CssWriter(Appendable css, SourceMapBuilder sourceMap, SourcePositions positions) {
+            this.css = css;
+            this.sourceMap = positions != null ? sourceMap : null;
+            this.positions = positions;
+        }
+
+        // genereer de stylesheet door alle stylerules te verwerken
+        @Override
+        public Void visitStylesheet(Stylesheet node) {
+            // loop door alle kinderen van de stylesheet, alleen stylerules schrijven iets
+            for (ASTNode child : node.body) {
+                child.accept(this);
+            }
+            return null;
+        }
+
+        // genereer een stylerule met zijn selectors en body
+        @Override
+        public Void visitStylerule(Stylerule node) {
+            // voeg de indentatie voor de huidige regel toe
+            appendIndent();
+            addMapping(node);
+
+            // voeg alle selectors toe, gescheiden door komma's
+            for (int i = 0; i < node.selectors.size(); i++) {
+                // voor elke selector behalve de eerste komt een komma en spatie
+                if (i > 0) write(", ");
+                node.selectors.get(i).accept(this);
+            }
+
+            // voeg de openingshaakje toe voor de body van de stylerule
+            write(" {\n");
+            indentLevel++;
+            // loop door alle body-elementen van de stylerule, alleen declaraties schrijven iets
+            for (ASTNode body : node.body) {
+                body.accept(this);
+            }
+            indentLevel--;
+            // voeg de sluitingshaakje toe voor de stylerule
+            appendIndent();
+            write("}\n");
+            return null;
+        }
+
+        // de toString van een selector geeft het veld terug, er wordt niets opgebouwd
+        @Override
+        public Void visitSelector(Selector node) {
+            write(node.toString());
+            return null;
+        }
+
+        @Override
+        public Void visitDeclaration(Declaration node) {
+            // controleer of de eigenschap niet null is
+            if (node.property == null) return null;
+            // schrijf de declaratie in het juiste formaat: "naam: waarde;"
+            appendIndent();
+            addMapping(node);
+            write(node.property.name);
+            write(": ");
+            if (node.expression != null) {
+                node.expression.accept(this);
+            }
+            write(";\n");
+            return null;
+        }
+
+        // schrijf een literal direct in de buffer, bijvoorbeeld: een PixelLiteral met waarde 100 wordt 100px
+        @Override
+        public Void visitPixelLiteral(PixelLiteral node) {
+            appendInt(node.value);
+            write("px");
+            return null;
+        }
+        @Override
+        public Void visitPercentageLiteral(PercentageLiteral node) {
+            appendInt(node.value);
+            write('%');
+            return null;
+        }
+        @Override
+        public Void visitScalarLiteral(ScalarLiteral node) {
+            appendInt(node.value);
+            return null;
+        }
+        @Override
+        public Void visitBoolLiteral(BoolLiteral node) {
+            write(node.value ? "TRUE" : "FALSE");
+            return null;
+        }
+
+        // schrijf een kleur als #rrggbb, of als #rrggbbaa als hij niet volledig dekkend is
+        @Override
+        public Void visitColorLiteral(ColorLiteral color) {
+            write('#');
+            appendHexByte(color.red());
+            appendHexByte(color.green());
+            appendHexByte(color.blue());
+            if (color.alpha() != 0xff) {
+                appendHexByte(color.alpha());
+            }
+            return null;
+        }
+
+        // niet-getransformeerde expressies worden geschreven zoals ze in de ICSS staan
+        @Override
+        public Void visitVariableReference(VariableReference node) {
+            write(node.name);
+            return null;
+        }
+        @Override
+        public Void visitAddOperation(AddOperation node) {
+            return appendOperation(node, " + ");
+        }
+        @Override
+        public Void visitSubtractOperation(SubtractOperation node) {
+            return appendOperation(node, " - ");
+        }
+        @Override
+        public Void visitMultiplyOperation(MultiplyOperation node) {
+            return appendOperation(node, " * ");
+        }
+
+        private Void appendOperation(Operation operation, String operator) {
+            appendOperand(operation.lhs, operation, false);
+            write(operator);
+            appendOperand(operation.rhs, operation, true);
+            return null;
+        }
+
+        // een operand die zwakker bindt dan zijn operatie krijgt haakjes, anders verandert de betekenis
+        private void appendOperand(Expression operand, Operation parent, boolean right) {
+            boolean parentheses = needsParentheses(operand, parent, right);
+            if (parentheses) {
+                write('(');
+            }
+            operand.accept(this);
+            if (parentheses) {
+                write(')');
+            }
+        }
+
+        private boolean needsParentheses(Expression operand, Operation parent, boolean right) {
+            if (!(operand instanceof Operation)) {
+                return false;
+            }
+            int difference = precedence(operand) - precedence(parent);
+            if (difference != 0) {
+                return difference < 0;
+            }
+            // bij gelijke binding schrijft alleen a + b + c of a * b * c links zonder haakjes;
+            // de grammatica laat + sterker binden dan -, dus ook a - b + c krijgt haakjes
+            return right || operand.getClass() != parent.getClass();
+        }
+
+        private int precedence(Expression operation) {
+            return operation instanceof MultiplyOperation ? 2 : 1;
+        }
+
+        private void appendIndent() {
+            // gebruik de gecachte indentatie, alleen bij heel diepe nesting wordt er herhaald
+            if (indentLevel < INDENTS.length) {
+                write(INDENTS[indentLevel]);
+                return;
+            }
+            for (int i = 0; i < indentLevel; i++) {
+                write(INDENT);
+            }
+        }
+
+        private void appendInt(int value) {
+            // een StringBuilder kan een int direct opnemen zonder tussenliggende String
+            if (css instanceof StringBuilder && sourceMap == null) {
+                ((StringBuilder) css).append(value);
+                return;
+            }
+            // anders komen de cijfers van achter naar voren in een herbruikbare buffer
+            long rest = Math.abs((long) value);
+            int start = digits.length;
+            do {
+                digits[--start] = (char) ('0' + rest % 10);
+                rest /= 10;
+            } while (rest != 0);
+            if (value < 0) {
+                write('-');
+            }
+            // een Writer maakt van een CharSequence toch een String, dus teken voor teken
+            for (int i = start; i < digits.length; i++) {
+                write(digits[i]);
+            }
+        }
+
+        private void appendHexByte(int value) {
+            write(HEX_DIGITS[value >> 4]);
+            write(HEX_DIGITS[value & 0xf]);
+        }
+
+        // koppel de huidige plek in de output aan de plek van de node in de ICSS
+        private void addMapping(ASTNode node) {
+            if (sourceMap != null && positions.contains(node)) {
+                sourceMap.addMapping(line, column, positions.getLine(node.getPositionId()) - 1, positions.getColumn(node.getPositionId()));
+            }
+        }
+
+        private void write(CharSequence text) {
+            try {
+                css.append(text);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (sourceMap != null) {
+                for (int i = 0; i < text.length(); i++) {
+                    advance(text.charAt(i));
+                }
+            }
+        }
+
+        private void write(char c) {
+            try {
+                css.append(c);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (sourceMap != null) {
+                advance(c);
+            }
+        }
+
+        private void advance(char c) {
+            if (c == '\n') {
+                line++;
+                column = 0;
+            } else {
+                column++;
+            }
+        }
     }
 }
@@ -0,0 +1,124 @@
+package nl.han.ica.icss.generator;
+
+/**
+ * Builds a version 3 source map for one generated CSS file while the Generator writes it.
+ * Mappings have to be added in the order of the output; each one is VLQ-encoded into the
+ * mappings string right away, so no list of mappings is kept and no second pass is needed.
+ *
+ * Lines and columns are counted from 0, as in the source map format.
+ */
+public class SourceMapBuilder {
+    private static final char[] BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+    private final String file;
+    private final String source;
+    private final StringBuilder mappings = new StringBuilder();
+
+    // de velden van een segment zijn relatief ten opzichte van het vorige segment
+    private int generatedLine = 0;
+    private int previousGeneratedColumn = 0;
+    private int previousSourceLine = 0;
+    private int previousSourceColumn = 0;
+    private boolean lineHasSegments = false;
+    private int size = 0;
+
+    /**
+     * @param file name of the generated CSS file
+     * @param source name of the ICSS file, relative to the map
+     */
+    public SourceMapBuilder(String file, String source) {
+        this.file = file;
+        this.source = source;
+    }
+
+    /**
+     * Maps a position in the generated CSS to a position in the ICSS source.
+     */
+    public void addMapping(int generatedLine, int generatedColumn, int sourceLine, int sourceColumn) {
+        if (generatedLine < this.generatedLine
+                || (generatedLine == this.generatedLine && generatedColumn < previousGeneratedColumn)) {
+            throw new IllegalArgumentException("Mappings must be added in the order of the output");
+        }
+        // elke nieuwe regel in de output is een ';', de kolom telt daarna weer vanaf 0
+        while (this.generatedLine < generatedLine) {
+            mappings.append(';');
+            this.generatedLine++;
+            previousGeneratedColumn = 0;
+            lineHasSegments = false;
+        }
+        if (lineHasSegments) {
+            mappings.append(',');
+        }
+        appendVlq(generatedColumn - previousGeneratedColumn);
+        // er is maar één bron, dus de index is altijd 0
+        appendVlq(0);
+        appendVlq(sourceLine - previousSourceLine);
+        appendVlq(sourceColumn - previousSourceColumn);
+
+        previousGeneratedColumn = generatedColumn;
+        previousSourceLine = sourceLine;
+        previousSourceColumn = sourceColumn;
+        lineHasSegments = true;
+        size++;
+    }
+
+    /**
+     * @return the number of mappings added so far
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the encoded mappings, the "mappings" field of the map
+     */
+    public String getMappings() {
+        return mappings.toString();
+    }
+
+    /**
+     * @return the complete source map as JSON
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder(mappings.length() + 128);
+        json.append("{\"version\":3,\"file\":");
+        appendJsonString(json, file);
+        json.append(",\"sources\":[");
+        appendJsonString(json, source);
+        json.append("],\"names\":[],\"mappings\":");
+        appendJsonString(json, getMappings());
+        json.append("}\n");
+        return json.toString();
+    }
+
+    // base64 VLQ: het teken zit in de laagste bit, daarna groepen van 5 bits met een vervolgbit
+    private void appendVlq(int value) {
+        int vlq = value < 0 ? ((-value) << 1) | 1 : value << 1;
+        do {
+            int digit = vlq & 31;
+            vlq >>>= 5;
+            if (vlq > 0) {
+                digit |= 32;
+            }
+            mappings.append(BASE64[digit]);
+        } while (vlq > 0);
+    }
+
+    /**
+     * Appends the value as a JSON string, with quotes, backslashes and control characters escaped.
+     */
+    public static void appendJsonString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+}
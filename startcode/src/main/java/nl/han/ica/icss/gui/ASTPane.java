@@ -8,20 +8,26 @@ import javafx.scene.control.TreeView;
 import javafx.scene.layout.BorderPane;
 import nl.han.ica.icss.ast.AST;
 import nl.han.ica.icss.ast.ASTNode;
+import nl.han.ica.icss.ast.SourcePositions;
+import nl.han.ica.icss.ast.Stylesheet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
 
 public class ASTPane extends BorderPane {
 
-    private TreeView<ASTNode> content;
+    private TreeView<NodeSnapshot> content;
     private Label title;
 
     public ASTPane () {
 		super();
 
 		title = new Label("Internal (AST):");
-		content = new TreeView<ASTNode>();
-        content.setCellFactory(treeview ->  new TreeCell<ASTNode>() {
+		content = new TreeView<NodeSnapshot>();
+        content.setCellFactory(treeview ->  new TreeCell<NodeSnapshot>() {
             @Override
-            public void updateItem(ASTNode item, boolean empty) {
+            public void updateItem(NodeSnapshot item, boolean empty) {
                 super.updateItem(item, empty);
 
                 getStyleClass().removeAll("error");
@@ -29,8 +35,8 @@ public class ASTPane extends BorderPane {
                 if(empty) {
                     setText("");
                 } else {
-                    setText(item.getNodeLabel());
-                    if(item.hasError()) {
+                    setText(item.label);
+                    if(item.error) {
                         getStyleClass().add("error");
                     }
                 }
@@ -44,20 +50,142 @@ public class ASTPane extends BorderPane {
         setPrefWidth(400);
 	}
     /**
-     * Updates the panes based on the current content of the AST
-     * @param ast
+     * Calls the handler with the node whenever a node in the tree is selected
+     * @param handler
+     */
+    public void setOnNodeSelected(Consumer<NodeSnapshot> handler) {
+        content.getSelectionModel().selectedItemProperty().addListener((observable, oldItem, newItem) -> {
+            if (newItem != null) {
+                handler.accept(newItem.getValue());
+            }
+        });
+    }
+    /**
+     * Selects the first node with an error, in the order of the source
+     * @return true when there was a node with an error
      */
-    public void update(AST ast) {
-        content.setRoot(astNodeToTreeItem(ast.root));
+    public boolean selectFirstError() {
+        TreeItem<NodeSnapshot> item = findFirstError(content.getRoot());
+        if (item == null) {
+            return false;
+        }
+        content.getSelectionModel().select(item);
+        content.scrollTo(content.getRow(item));
+        return true;
     }
-    private TreeItem<ASTNode> astNodeToTreeItem(ASTNode astNode) {
+    private TreeItem<NodeSnapshot> findFirstError(TreeItem<NodeSnapshot> item) {
+        if (item == null || item.getValue().error) {
+            return item;
+        }
+        for (TreeItem<NodeSnapshot> child : item.getChildren()) {
+            TreeItem<NodeSnapshot> found = findFirstError(child);
+            if (found != null) {
+                return found;
+            }
+        }
+        return null;
+    }
+    /**
+     * Updates the panes based on a snapshot of the AST
+     * @param tree
+     */
+    public void update(NodeSnapshot tree) {
+        TreeItem<NodeSnapshot> root = content.getRoot();
+        if (root == null || !(root.getValue().node instanceof Stylesheet)) {
+            content.setRoot(toTreeItem(tree));
+            return;
+        }
+        //Statements that were reused by the parser keep their tree items,
+        //only the changed part between the unchanged start and end is replaced
+        root.setValue(tree);
+        List<TreeItem<NodeSnapshot>> items = root.getChildren();
+        List<NodeSnapshot> body = tree.children;
+        int start = 0;
+        while (start < items.size() && start < body.size() && items.get(start).getValue().node == body.get(start).node) {
+            start++;
+        }
+        int end = 0;
+        while (end < items.size() - start && end < body.size() - start
+                && items.get(items.size() - 1 - end).getValue().node == body.get(body.size() - 1 - end).node) {
+            end++;
+        }
+        //The error markers and positions of reused nodes can have changed
+        for (int i = 0; i < start; i++) {
+            setValues(items.get(i), body.get(i));
+        }
+        for (int i = 1; i <= end; i++) {
+            setValues(items.get(items.size() - i), body.get(body.size() - i));
+        }
+        List<TreeItem<NodeSnapshot>> changed = new ArrayList<>();
+        for (int i = start; i < body.size() - end; i++) {
+            changed.add(toTreeItem(body.get(i)));
+        }
+        items.subList(start, items.size() - end).clear();
+        items.addAll(start, changed);
+    }
+    //A reused node has the same children, so the items match the snapshot one to one
+    private void setValues(TreeItem<NodeSnapshot> item, NodeSnapshot snapshot) {
+        item.setValue(snapshot);
+        for (int i = 0; i < snapshot.children.size(); i++) {
+            setValues(item.getChildren().get(i), snapshot.children.get(i));
+        }
+    }
+    private TreeItem<NodeSnapshot> toTreeItem(NodeSnapshot snapshot) {
 
-        TreeItem<ASTNode> tvNode = new TreeItem<ASTNode>(astNode);
+        TreeItem<NodeSnapshot> tvNode = new TreeItem<NodeSnapshot>(snapshot);
         tvNode.setExpanded(true);
 
-        for(ASTNode child : astNode.getChildren()) {
-            tvNode.getChildren().add(astNodeToTreeItem(child));
+        for (NodeSnapshot child : snapshot.children) {
+            tvNode.getChildren().add(toTreeItem(child));
         }
         return tvNode;
     }
+
+    /**
+     * What the tree shows of one AST node. It is taken on the thread that owns the AST,
+     * because the next parse changes the ids and errors of the nodes it reuses.
+     */
+    public static class NodeSnapshot {
+        //Only compared by identity, to recognise statements that the parser reused
+        private final ASTNode node;
+        private final String label;
+        private final boolean error;
+        private final int start;
+        private final int stop;
+        private final List<NodeSnapshot> children = new ArrayList<>();
+
+        private NodeSnapshot(ASTNode node, SourcePositions positions) {
+            this.node = node;
+            this.label = node.getNodeLabel();
+            this.error = node.hasError();
+            boolean known = positions != null && positions.contains(node);
+            this.start = known ? positions.getStart(node.getPositionId()) : -1;
+            this.stop = known ? positions.getStop(node.getPositionId()) : -1;
+            for (int i = 0; i < node.childCount(); i++) {
+                if (node.child(i) != null) {
+                    children.add(new NodeSnapshot(node.child(i), positions));
+                }
+            }
+        }
+
+        /**
+         * @return the snapshot of the tree, or null when there is no AST
+         */
+        public static NodeSnapshot of(AST ast) {
+            if (ast == null || ast.root == null) {
+                return null;
+            }
+            return new NodeSnapshot(ast.root, ast.positions);
+        }
+
+        public boolean hasPosition() {
+            return start >= 0;
+        }
+        public int getStart() {
+            return start;
+        }
+        public int getStop() {
+            return stop;
+        }
+    }
 }
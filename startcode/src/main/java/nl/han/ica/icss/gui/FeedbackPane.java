@@ -15,4 +15,7 @@ public class FeedbackPane extends TextArea {
 	public void addLine(String line) {
 		this.setText( this.getText() + "\n" + line);
 	}
+	public void addTiming(String stage, long nanos) {
+		addLine(String.format("%s: %.2f ms", stage, nanos / 1e6));
+	}
 }
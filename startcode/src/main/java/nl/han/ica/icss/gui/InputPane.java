@@ -39,4 +39,18 @@ public class InputPane extends BorderPane {
 	public String getText() {
 		return content.getText();
 	}
+	/**
+	 * Calls the handler after every change of the text, also when the text is loaded from a file
+	 */
+	public void setOnTextChanged(Runnable handler) {
+		content.textProperty().addListener((observable, oldText, newText) -> handler.run());
+	}
+	/**
+	 * Selects the characters from start up to stop and puts the caret at the start
+	 */
+	public void select(int start, int stop) {
+		int length = content.getLength();
+		content.selectRange(Math.min(stop, length), Math.min(start, length));
+		content.requestFocus();
+	}
 }
@@ -2,6 +2,7 @@ package nl.han.ica.icss.gui;
 
 import com.google.common.io.Resources;
 
+import javafx.animation.PauseTransition;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.event.ActionEvent;
@@ -13,14 +14,24 @@ import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import javafx.util.Duration;
 import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.gui.ASTPane.NodeSnapshot;
 
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 //We use this google library, because it makes life so much easier when
 //reading the examples icss files as packaged resource
@@ -44,9 +55,21 @@ public class MainGui extends Application {
     private Button transformButton;
     private Button generateButton;
 
-    //Model
+    //Model, only used on the worker thread
     private Pipeline pipeline;
 
+    //Background compilation: one worker thread, so the stages of the pipeline never overlap
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "icss-compiler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    //Every run gets a new number, a run whose number is no longer the latest is stale
+    private final AtomicLong generation = new AtomicLong();
+    private Future<?> running;
+    //Waits until the user stops typing before compiling
+    private final PauseTransition typingPause = new PauseTransition(Duration.millis(300));
+
 
     @Override
     public void start(Stage stage) {
@@ -57,7 +80,10 @@ public class MainGui extends Application {
         stage.setTitle(title);
 
         inputPane = new InputPane();
+        typingPause.setOnFinished(e -> parseAndCheck());
+        inputPane.setOnTextChanged(typingPause::playFromStart);
         astPane = new ASTPane();
+        astPane.setOnNodeSelected(this::showSource);
         outputPane = new OutputPane();
         feedbackPane = new FeedbackPane();
 
@@ -168,7 +194,7 @@ public class MainGui extends Application {
         HBox toolbar = new HBox();
         toolbar.setPadding(new Insets(5, 5, 5, 5));
         toolbar.getChildren().addAll(new Label("Pipeline: "), parseButton, checkButton, transformButton, generateButton);
-        updateToolbar();
+        updateToolbar(false, false);
 
         BorderPane bottom = new BorderPane();
         bottom.setPadding(new Insets(10, 10, 10, 10));
@@ -186,67 +212,189 @@ public class MainGui extends Application {
         stage.show();
     }
 
-    private void clear() {
-        feedbackPane.clear();
-        pipeline.clearErrors();
+    @Override
+    public void stop() {
+        worker.shutdownNow();
     }
 
     private void parse() {
-        clear();
-        feedbackPane.addLine("Parsing...");
-        pipeline.parseString(inputPane.getText());
-        for(String e : pipeline.getErrors()) {
-            feedbackPane.addLine(e);
-        }
+        String input = inputPane.getText();
+        submit(run -> {
+            Update update = new Update("Parsing...");
+            parseStage(input, update);
+            return update;
+        });
+    }
+
+    //Runs when the user stopped typing for a moment
+    private void parseAndCheck() {
+        String input = inputPane.getText();
+        submit(run -> {
+            Update update = new Update("Parsing...");
+            if (parseStage(input, update) && !run.isStale()) {
+                update.lines.add("Checking...");
+                checkStage(update);
+            }
+            return update;
+        });
+    }
+
+    private void check() {
+        submit(run -> {
+            Update update = new Update("Checking...");
+            checkStage(update);
+            return update;
+        });
+    }
+
+    private void transform() {
+        submit(run -> {
+            Update update = new Update("Applying transformations...");
+            if (pipeline.isChecked()) {
+                long start = System.nanoTime();
+                pipeline.transform();
+                update.timings.put("Transform", System.nanoTime() - start);
+                if (pipeline.isTransformed()) {
+                    update.lines.add("Transformation succeeded");
+                }
+            }
+            update.tree = NodeSnapshot.of(pipeline.getAST());
+            update.setState(pipeline);
+            return update;
+        });
+    }
+
+    private void generate() {
+        submit(run -> {
+            Update update = new Update("Generating output...");
+            long start = System.nanoTime();
+            update.css = pipeline.generate();
+            update.timings.put("Generate", System.nanoTime() - start);
+            update.lines.add("Generating succeeded");
+            update.setState(pipeline);
+            return update;
+        });
+    }
+
+    //The stages below run on the worker thread, the only thread that uses the pipeline
+
+    private boolean parseStage(String input, Update update) {
+        pipeline.clearErrors();
+        long start = System.nanoTime();
+        pipeline.parseString(input);
+        update.timings.put("Parse", System.nanoTime() - start);
+        update.lines.addAll(pipeline.getErrors());
         if (pipeline.isParsed()) {
-            feedbackPane.addLine("Parsing succeeded");
+            update.lines.add("Parsing succeeded");
         }
-        astPane.update(pipeline.getAST());
-        updateToolbar();
+        update.tree = NodeSnapshot.of(pipeline.getAST());
+        update.setState(pipeline);
+        return pipeline.isParsed();
     }
 
-    private void check() {
-        clear();
-        feedbackPane.addLine("Checking...");
+    private void checkStage(Update update) {
+        pipeline.clearErrors();
+        long start = System.nanoTime();
         if (pipeline.check()) {
-            feedbackPane.addLine("AST is ok!");
+            update.lines.add("AST is ok!");
         } else {
-            for (String e : pipeline.getErrors()) {
-                feedbackPane.addLine(e);
+            update.lines.addAll(pipeline.getErrors());
+        }
+        update.timings.put("Check", System.nanoTime() - start);
+        update.tree = NodeSnapshot.of(pipeline.getAST());
+        //Jump to the first error in the source
+        update.selectFirstError = true;
+        update.setState(pipeline);
+    }
+
+    /**
+     * Runs the work on the worker thread and shows its result on the JavaFX thread.
+     * A newer call makes the older one stale: if it has not started yet it does not run,
+     * otherwise its result is not shown.
+     */
+    private void submit(Function<Run, Update> work) {
+        Run run = new Run(generation.incrementAndGet());
+        if (running != null) {
+            running.cancel(false);
+        }
+        running = worker.submit(() -> {
+            if (run.isStale()) {
+                return;
             }
+            Update update = work.apply(run);
+            Platform.runLater(() -> {
+                if (!run.isStale()) {
+                    update.show();
+                }
+            });
+        });
+    }
+
+    private class Run {
+        private final long number;
+
+        Run(long number) {
+            this.number = number;
+        }
+        boolean isStale() {
+            return generation.get() != number;
         }
-        astPane.update(pipeline.getAST());
-        updateToolbar();
     }
 
-    private void transform() {
-       clear();
-       feedbackPane.addLine("Applying transformations...");
-       pipeline.transform();
-       if (pipeline.isTransformed()) {
-           feedbackPane.addLine("Transformation succeeded");
-       }
-       astPane.update(pipeline.getAST());
-       updateToolbar();
+    //Everything a background run wants to show, collected on the worker thread.
+    //It holds no AST nodes: the next run on the worker changes the nodes it reuses
+    private class Update {
+        final List<String> lines = new ArrayList<>();
+        final Map<String, Long> timings = new LinkedHashMap<>();
+        NodeSnapshot tree;
+        String css;
+        boolean selectFirstError;
+        boolean parsed;
+        boolean checked;
+
+        Update(String firstLine) {
+            lines.add(firstLine);
+        }
+        void setState(Pipeline pipeline) {
+            parsed = pipeline.isParsed();
+            checked = pipeline.isChecked();
+        }
+        void show() {
+            feedbackPane.clear();
+            for (String line : lines) {
+                feedbackPane.addLine(line);
+            }
+            for (Map.Entry<String, Long> timing : timings.entrySet()) {
+                feedbackPane.addTiming(timing.getKey(), timing.getValue());
+            }
+            if (tree != null) {
+                astPane.update(tree);
+                if (selectFirstError) {
+                    astPane.selectFirstError();
+                }
+            }
+            if (css != null) {
+                outputPane.setText(css);
+            }
+            updateToolbar(parsed, checked);
+        }
     }
 
-    private void generate() {
-        clear();
-        feedbackPane.addLine("Generating output...");
-        outputPane.setText(pipeline.generate());
-        feedbackPane.addLine("Generating succeeded");
-        updateToolbar();
+    private void showSource(NodeSnapshot node) {
+        if (node.hasPosition()) {
+            inputPane.select(node.getStart(), node.getStop());
+        }
     }
 
-    private void updateToolbar() {
+    private void updateToolbar(boolean parsed, boolean checked) {
         //Quick and ugly way...
         checkButton.setDisable(true);
         transformButton.setDisable(true);
         generateButton.setDisable(true);
 
-        if (pipeline.isParsed()) {
+        if (parsed) {
             checkButton.setDisable(false);
-            if (pipeline.isChecked()) {
+            if (checked) {
                 transformButton.setDisable(false);
                 generateButton.setDisable(false);
             }
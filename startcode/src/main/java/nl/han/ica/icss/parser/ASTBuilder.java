@@ -0,0 +1,222 @@
+package nl.han.ica.icss.parser;
+
+import nl.han.ica.datastructures.HANStack;
+import nl.han.ica.datastructures.IHANStack;
+import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.ast.literals.*;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.operations.MultiplyOperation;
+import nl.han.ica.icss.ast.operations.SubtractOperation;
+import nl.han.ica.icss.ast.selectors.ClassSelector;
+import nl.han.ica.icss.ast.selectors.IdSelector;
+import nl.han.ica.icss.ast.selectors.TagSelector;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+
+/**
+ * Builds the ICSS AST while the parser runs, as a parse listener on a parser with
+ * setBuildParseTree(false). No parse tree is kept, so there is no second walk and
+ * only the AST is in memory.
+ *
+ * A parse listener gets the enter event of a left-recursive expression rule before
+ * the parser knows which alternative it is, so expressions are built bottom-up on
+ * the exit events with a stack of operands. Tokens are only available on exit.
+ */
+public class ASTBuilder extends ICSSBaseListener {
+
+	// Dit is de gehele AST
+	private AST ast;
+
+	// stack met de containers (stylesheet, stylerule, declaration, if/else) waar we aan toevoegen
+	private IHANStack<ASTNode> currentContainer;
+
+	// stack met de expressies die nog geen ouder hebben
+	private IHANStack<Expression> operands;
+
+	// waar elke node in de broncode staat
+	private SourcePositions positions;
+
+	public ASTBuilder() {
+		ast = new AST();
+		currentContainer = new HANStack<>();
+		operands = new HANStack<>();
+		positions = new SourcePositions();
+		ast.positions = positions;
+	}
+
+	public AST getAST() {
+		return ast;
+	}
+
+	@Override public void enterStylesheet(ICSSParser.StylesheetContext ctx) {
+		currentContainer.push(at(new Stylesheet(), ctx));
+	}
+
+	@Override public void exitStylesheet(ICSSParser.StylesheetContext ctx) {
+		ast.root = end((Stylesheet) currentContainer.pop(), ctx);
+	}
+
+	// het pad staat tussen aanhalingstekens, die horen er niet bij
+	@Override public void exitImportDirective(ICSSParser.ImportDirectiveContext ctx) {
+		if (ctx.STRING() == null) return;
+		String path = ctx.STRING().getText();
+		currentContainer.peek().addChild(at(new Import(path.substring(1, path.length() - 1)), ctx));
+	}
+
+	// de assignment wordt pas bij exit gemaakt, dan zijn de naam en de expressie bekend
+	@Override public void exitAssignment(ICSSParser.AssignmentContext ctx) {
+		Expression expression = popOperand();
+		if (ctx.CAPITAL_IDENT() == null || expression == null) return;
+
+		VariableAssignment assignment = at(new VariableAssignment(), ctx);
+		assignment.addChild(at(new VariableReference(ctx.CAPITAL_IDENT().getText()), ctx.CAPITAL_IDENT().getSymbol()));
+		assignment.addChild(expression);
+		currentContainer.peek().addChild(assignment);
+	}
+
+	@Override public void enterStylerule(ICSSParser.StyleruleContext ctx) {
+		currentContainer.push(at(new Stylerule(), ctx));
+	}
+
+	@Override public void exitStylerule(ICSSParser.StyleruleContext ctx) {
+		Stylerule stylerule = end((Stylerule) currentContainer.pop(), ctx);
+		currentContainer.peek().addChild(stylerule);
+	}
+
+	@Override public void exitSelector(ICSSParser.SelectorContext ctx) {
+		// maak de selector die bij het soort identifier hoort
+		if (ctx.LOWER_IDENT() != null) {
+			currentContainer.peek().addChild(at(new TagSelector(ctx.LOWER_IDENT().getText()), ctx));
+		} else if (ctx.CLASS_IDENT() != null) {
+			currentContainer.peek().addChild(at(new ClassSelector(ctx.CLASS_IDENT().getText()), ctx));
+		} else if (ctx.ID_IDENT() != null) {
+			currentContainer.peek().addChild(at(new IdSelector(ctx.ID_IDENT().getText()), ctx));
+		}
+	}
+
+	@Override public void enterDeclaration(ICSSParser.DeclarationContext ctx) {
+		currentContainer.push(at(new Declaration(), ctx));
+	}
+
+	@Override public void exitProperty(ICSSParser.PropertyContext ctx) {
+		if (ctx.LOWER_IDENT() != null) {
+			currentContainer.peek().addChild(at(new PropertyName(ctx.LOWER_IDENT().getText()), ctx));
+		}
+	}
+
+	@Override public void exitDeclaration(ICSSParser.DeclarationContext ctx) {
+		Declaration declaration = end((Declaration) currentContainer.pop(), ctx);
+		Expression expression = popOperand();
+		if (expression != null) {
+			declaration.addChild(expression);
+		}
+		currentContainer.peek().addChild(declaration);
+	}
+
+	@Override public void enterIfClause(ICSSParser.IfClauseContext ctx) {
+		IfClause ifClause = at(new IfClause(), ctx);
+		currentContainer.peek().addChild(ifClause);
+		currentContainer.push(ifClause);
+	}
+
+	// de conditie is de expressie die als laatste is afgesloten
+	@Override public void exitCondition(ICSSParser.ConditionContext ctx) {
+		Expression expression = popOperand();
+		if (expression != null) {
+			currentContainer.peek().addChild(expression);
+		}
+	}
+
+	@Override public void exitIfClause(ICSSParser.IfClauseContext ctx) {
+		end(currentContainer.pop(), ctx);
+	}
+
+	@Override public void enterElseClause(ICSSParser.ElseClauseContext ctx) {
+		ElseClause elseClause = at(new ElseClause(), ctx);
+		currentContainer.peek().addChild(elseClause);
+		currentContainer.push(elseClause);
+	}
+
+	@Override public void exitElseClause(ICSSParser.ElseClauseContext ctx) {
+		end(currentContainer.pop(), ctx);
+	}
+
+	@Override public void exitAddExpression(ICSSParser.AddExpressionContext ctx) {
+		pushOperation(at(new AddOperation(), ctx));
+	}
+
+	@Override public void exitSubExpression(ICSSParser.SubExpressionContext ctx) {
+		pushOperation(at(new SubtractOperation(), ctx));
+	}
+
+	@Override public void exitMulExpression(ICSSParser.MulExpressionContext ctx) {
+		pushOperation(at(new MultiplyOperation(), ctx));
+	}
+
+	@Override public void exitVariableReference(ICSSParser.VariableReferenceContext ctx) {
+		if (ctx.CAPITAL_IDENT() != null) operands.push(at(new VariableReference(ctx.CAPITAL_IDENT().getText()), ctx));
+	}
+
+	@Override public void exitScalarLiteral(ICSSParser.ScalarLiteralContext ctx) {
+		if (ctx.SCALAR() != null) operands.push(ScalarLiteral.of(ctx.SCALAR().getText()));
+	}
+
+	@Override public void exitPixelLiteral(ICSSParser.PixelLiteralContext ctx) {
+		if (ctx.PIXELSIZE() != null) operands.push(PixelLiteral.of(ctx.PIXELSIZE().getText()));
+	}
+
+	@Override public void exitPercentageLiteral(ICSSParser.PercentageLiteralContext ctx) {
+		if (ctx.PERCENTAGE() != null) operands.push(PercentageLiteral.of(ctx.PERCENTAGE().getText()));
+	}
+
+	@Override public void exitColorLiteral(ICSSParser.ColorLiteralContext ctx) {
+		// #rrggbb is een COLOR, #rrggbbaa een ID_IDENT
+		Token color = ctx.COLOR() != null ? ctx.COLOR().getSymbol() : ctx.ID_IDENT() != null ? ctx.ID_IDENT().getSymbol() : null;
+		if (color != null) operands.push(ColorLiteral.of(color.getText()));
+	}
+
+	@Override public void exitTrueLiteral(ICSSParser.TrueLiteralContext ctx) {
+		operands.push(BoolLiteral.of(true));
+	}
+
+	@Override public void exitFalseLiteral(ICSSParser.FalseLiteralContext ctx) {
+		operands.push(BoolLiteral.of(false));
+	}
+
+	// onthoud waar de node in de broncode begint en geef de node terug;
+	// bij een exit-event is het laatste token ook al bekend
+	private <T extends ASTNode> T at(T node, ParserRuleContext ctx) {
+		positions.add(node, ctx.start.getLine(), ctx.start.getCharPositionInLine(), ctx.start.getStartIndex());
+		return end(node, ctx);
+	}
+
+	// zelfde als hierboven, voor een node die uit één token bestaat
+	private <T extends ASTNode> T at(T node, Token token) {
+		positions.add(node, token.getLine(), token.getCharPositionInLine(), token.getStartIndex());
+		positions.setStop(node, token.getStopIndex() + 1);
+		return node;
+	}
+
+	// containers worden bij enter gemaakt, hun einde komt pas bij exit
+	private <T extends ASTNode> T end(T node, ParserRuleContext ctx) {
+		if (ctx.stop != null) {
+			positions.setStop(node, ctx.stop.getStopIndex() + 1);
+		}
+		return node;
+	}
+
+	// een operatie neemt de twee bovenste operanden; de rechter ligt bovenop
+	private void pushOperation(Operation operation) {
+		Expression rhs = popOperand();
+		Expression lhs = popOperand();
+		if (lhs == null || rhs == null) return;
+		operation.addChild(lhs);
+		operation.addChild(rhs);
+		operands.push(operation);
+	}
+
+	// bij syntaxfouten kan een operand ontbreken, dan is de AST toch niet bruikbaar
+	private Expression popOperand() {
+		return operands.isEmpty() ? null : operands.pop();
+	}
+}
@@ -13,6 +13,8 @@ import nl.han.ica.icss.ast.operations.SubtractOperation;
 import nl.han.ica.icss.ast.selectors.ClassSelector;
 import nl.han.ica.icss.ast.selectors.IdSelector;
 import nl.han.ica.icss.ast.selectors.TagSelector;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
 
 /**
  * This class extracts the ICSS Abstract Syntax Tree from the Antlr Parse tree.
@@ -25,21 +27,44 @@ public class ASTListener extends ICSSBaseListener {
 	// Dit is een stack die bijhoudt in welke container we momenteel aan het toevoegen zijn
 	private IHANStack<ASTNode> currentContainer;
 
+	// Hierin staat waar elke node in de broncode staat
+	private SourcePositions positions;
+
 	public ASTListener() {
         // Maak een nieuwe lege AST aan
 		ast = new AST();
         // Maak een nieuwe lege stack aan voor de huidige container
 		currentContainer = new HANStack<>();
+        // De posities horen bij de AST
+		positions = new SourcePositions();
+		ast.positions = positions;
 	}
     // Geeft de gegenereerde AST terug
     public AST getAST() {
         return ast;
     }
 
+    // Onthoud waar de node in de broncode staat en geef de node terug
+    // De parse tree is al compleet als we erdoorheen lopen, dus het laatste token is ook al bekend
+	private <T extends ASTNode> T at(T node, ParserRuleContext ctx) {
+		positions.add(node, ctx.start.getLine(), ctx.start.getCharPositionInLine(), ctx.start.getStartIndex());
+		if (ctx.stop != null) {
+			positions.setStop(node, ctx.stop.getStopIndex() + 1);
+		}
+		return node;
+	}
+
+    // Zelfde als hierboven, voor een node die uit één token bestaat
+	private <T extends ASTNode> T at(T node, Token token) {
+		positions.add(node, token.getLine(), token.getCharPositionInLine(), token.getStartIndex());
+		positions.setStop(node, token.getStopIndex() + 1);
+		return node;
+	}
+
     // Enter-methode voor stylesheet
 	@Override public void enterStylesheet(ICSSParser.StylesheetContext ctx) {
         // Nieuwe Stylesheet node aanmaken
-		Stylesheet stylesheet = new Stylesheet();
+		Stylesheet stylesheet = at(new Stylesheet(), ctx);
         // Push de stylesheet op de huidige container stack
 		currentContainer.push(stylesheet);
 	}
@@ -52,13 +77,23 @@ public class ASTListener extends ICSSBaseListener {
 		ast.root = stylesheet;
 	}
 
+    // Enter-methode voor een import
+	@Override
+	public void enterImportDirective(ICSSParser.ImportDirectiveContext ctx) {
+        // Het pad zonder de aanhalingstekens
+		String path = ctx.STRING().getText();
+		Import importNode = at(new Import(path.substring(1, path.length() - 1)), ctx);
+        // Voeg de import toe aan de stylesheet
+		currentContainer.peek().addChild(importNode);
+	}
+
     // Enter-methode voor een variable assignment
 	@Override
 	public void enterAssignment(ICSSParser.AssignmentContext ctx) {
         // Nieuwe VariableAssignment node aanmaken
-		VariableAssignment assignment = new VariableAssignment();
+		VariableAssignment assignment = at(new VariableAssignment(), ctx);
         // Zet de naam van de variabele
-		assignment.name = new VariableReference(ctx.CAPITAL_IDENT().getText());
+		assignment.name = at(new VariableReference(ctx.CAPITAL_IDENT().getText()), ctx.CAPITAL_IDENT().getSymbol());
         // Voeg de assignment toe aan de huidige container
 		currentContainer.peek().addChild(assignment);
         // Push de assignment op de huidige container stack
@@ -75,7 +110,7 @@ public class ASTListener extends ICSSBaseListener {
 	@Override
 	public void enterVariableReference(ICSSParser.VariableReferenceContext ctx) {
         // Nieuwe VariableReference node aanmaken
-		VariableReference varRef = new VariableReference(ctx.CAPITAL_IDENT().getText());
+		VariableReference varRef = at(new VariableReference(ctx.CAPITAL_IDENT().getText()), ctx);
         // Voeg de variable reference toe aan de huidige container
 		currentContainer.peek().addChild(varRef);
 	}
@@ -83,7 +118,7 @@ public class ASTListener extends ICSSBaseListener {
     // Enter-methode voor stylerule
 	@Override public void enterStylerule(ICSSParser.StyleruleContext ctx) {
         // Nieuwe Stylerule node aanmaken
-		Stylerule stylerule = new Stylerule();
+		Stylerule stylerule = at(new Stylerule(), ctx);
         // Push de stylerule op de huidige container stack
 		currentContainer.push(stylerule);
 	}
@@ -101,19 +136,19 @@ public class ASTListener extends ICSSBaseListener {
         // Als het een tag selector is
 		if (ctx.LOWER_IDENT() != null) {
             // Nieuwe TagSelector node aanmaken
-			TagSelector selector = new TagSelector(ctx.LOWER_IDENT().getText());
+			TagSelector selector = at(new TagSelector(ctx.LOWER_IDENT().getText()), ctx);
             // Voeg de tag selector toe aan de huidige container
 			currentContainer.peek().addChild(selector);
         // Als het een class selector is
 		} else if (ctx.CLASS_IDENT() != null) {
             // Nieuwe ClassSelector node aanmaken
-			ClassSelector selector = new ClassSelector(ctx.CLASS_IDENT().getText());
+			ClassSelector selector = at(new ClassSelector(ctx.CLASS_IDENT().getText()), ctx);
             // Voeg de class selector toe aan de huidige container
 			currentContainer.peek().addChild(selector);
         // Als het een id selector is
 		} else if (ctx.ID_IDENT() != null) {
             // Nieuwe IdSelector node aanmaken
-			IdSelector selector = new IdSelector(ctx.ID_IDENT().getText());
+			IdSelector selector = at(new IdSelector(ctx.ID_IDENT().getText()), ctx);
             // Voeg de id selector toe aan de huidige container
 			currentContainer.peek().addChild(selector);
 		}
@@ -122,7 +157,9 @@ public class ASTListener extends ICSSBaseListener {
     // Enter-methode voor declaration
 	@Override public void enterDeclaration(ICSSParser.DeclarationContext ctx) {
         // Nieuwe Declaration node aanmaken
-		Declaration declaration = new Declaration(ctx.property().getText());
+		Declaration declaration = at(new Declaration(ctx.property().getText()), ctx);
+        // De property heeft zijn eigen plek in de declaration
+		at(declaration.property, ctx.property());
         // Push de declaration op de huidige container stack
 		currentContainer.push(declaration);
 	}
@@ -138,7 +175,7 @@ public class ASTListener extends ICSSBaseListener {
     // Enter-methode voor if-clause
     @Override public void enterIfClause(ICSSParser.IfClauseContext ctx) {
         // Nieuwe IfClause node aanmaken
-        IfClause ifClause = new IfClause();
+        IfClause ifClause = at(new IfClause(), ctx);
         // Voeg de if-clause toe aan de huidige container
         currentContainer.peek().addChild(ifClause);
         // Push de if-clause op de huidige container stack
@@ -154,7 +191,7 @@ public class ASTListener extends ICSSBaseListener {
     // Enter-methode voor else-clause
     @Override public void enterElseClause(ICSSParser.ElseClauseContext ctx) {
         // Nieuwe ElseClause node aanmaken
-        ElseClause elseClause = new ElseClause();
+        ElseClause elseClause = at(new ElseClause(), ctx);
         // Voeg de else-clause toe aan de huidige container
         currentContainer.peek().addChild(elseClause);
         // Push de else-clause op de huidige container stack
@@ -170,7 +207,7 @@ public class ASTListener extends ICSSBaseListener {
     // Enter-methode voor add-expression
 	@Override public void enterAddExpression(ICSSParser.AddExpressionContext ctx) {
         // Nieuwe AddOperation node aanmaken
-		AddOperation addOperation = new AddOperation();
+		AddOperation addOperation = at(new AddOperation(), ctx);
         // Voeg de add-operation toe aan de huidige container
 		currentContainer.peek().addChild(addOperation);
         // Push de add-operation op de huidige container stack
@@ -186,7 +223,7 @@ public class ASTListener extends ICSSBaseListener {
     // Enter-methode voor subtract-expression
 	@Override public void enterSubExpression(ICSSParser.SubExpressionContext ctx) {
         // Nieuwe SubtractOperation node aanmaken
-		SubtractOperation subtractOperation = new SubtractOperation();
+		SubtractOperation subtractOperation = at(new SubtractOperation(), ctx);
         // Voeg de subtract-operation toe aan de huidige container
 		currentContainer.peek().addChild(subtractOperation);
         // Push de subtract-operation op de huidige container stack
@@ -202,7 +239,7 @@ public class ASTListener extends ICSSBaseListener {
     // Enter-methode voor multiply-expression
 	@Override public void enterMulExpression(ICSSParser.MulExpressionContext ctx) {
         // Nieuwe MultiplyOperation node aanmaken
-		MultiplyOperation multiplyOperation = new MultiplyOperation();
+		MultiplyOperation multiplyOperation = at(new MultiplyOperation(), ctx);
         // Voeg de multiply-operation toe aan de huidige container
 		currentContainer.peek().addChild(multiplyOperation);
         // Push de multiply-operation op de huidige container stack
@@ -218,7 +255,7 @@ public class ASTListener extends ICSSBaseListener {
     // Enter-methode voor scalar-literal
 	@Override public void enterScalarLiteral(ICSSParser.ScalarLiteralContext ctx) {
         // Nieuwe ScalarLiteral node aanmaken
-		ScalarLiteral scalarLiteral = new ScalarLiteral(ctx.SCALAR().getText());
+		ScalarLiteral scalarLiteral = ScalarLiteral.of(ctx.SCALAR().getText());
         // Voeg de scalar-literal toe aan de huidige container
 		currentContainer.peek().addChild(scalarLiteral);
 	}
@@ -226,15 +263,24 @@ public class ASTListener extends ICSSBaseListener {
     // Enter-methode voor pixel-literal
 	@Override public void enterPixelLiteral(ICSSParser.PixelLiteralContext ctx) {
         // Nieuwe PixelLiteral node aanmaken
-		PixelLiteral pixelLiteral = new PixelLiteral((ctx.PIXELSIZE().getText()));
+		PixelLiteral pixelLiteral = PixelLiteral.of((ctx.PIXELSIZE().getText()));
         // Voeg de pixel-literal toe aan de huidige container
 		currentContainer.peek().addChild(pixelLiteral);
 	}
 
+    // Enter-methode voor percentage-literal
+	@Override public void enterPercentageLiteral(ICSSParser.PercentageLiteralContext ctx) {
+        // Nieuwe PercentageLiteral node aanmaken
+		PercentageLiteral percentageLiteral = PercentageLiteral.of(ctx.PERCENTAGE().getText());
+        // Voeg de percentage-literal toe aan de huidige container
+		currentContainer.peek().addChild(percentageLiteral);
+	}
+
     // Enter-methode voor color-literal
 	@Override public void enterColorLiteral(ICSSParser.ColorLiteralContext ctx) {
         // Nieuwe ColorLiteral node aanmaken
-		ColorLiteral colorLiteral = new ColorLiteral(ctx.COLOR().getText());
+		// #rrggbb is een COLOR, #rrggbbaa een ID_IDENT
+		ColorLiteral colorLiteral = ColorLiteral.of((ctx.COLOR() != null ? ctx.COLOR() : ctx.ID_IDENT()).getText());
         // Voeg de color-literal toe aan de huidige container
 		currentContainer.peek().addChild(colorLiteral);
 	}
@@ -245,7 +291,7 @@ public class ASTListener extends ICSSBaseListener {
     // en het duidelijker is om ze apart te behandelen.
 	@Override public void enterTrueLiteral(ICSSParser.TrueLiteralContext ctx) {
         // Nieuwe BoolLiteral node aanmaken
-		BoolLiteral boolLiteral = new BoolLiteral(true);
+		BoolLiteral boolLiteral = BoolLiteral.of(true);
         // Voeg de bool-literal toe aan de huidige container
 		currentContainer.peek().addChild(boolLiteral);
 	}
@@ -253,7 +299,7 @@ public class ASTListener extends ICSSBaseListener {
     // Enter-methode voor false bool-literal
 	@Override public void enterFalseLiteral(ICSSParser.FalseLiteralContext ctx) {
         // Nieuwe BoolLiteral node aanmaken
-		BoolLiteral boolLiteral = new BoolLiteral(false);
+		BoolLiteral boolLiteral = BoolLiteral.of(false);
         // Voeg de bool-literal toe aan de huidige container
 		currentContainer.peek().addChild(boolLiteral);
 	}
@@ -0,0 +1,262 @@
+package nl.han.ica.icss.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import nl.han.ica.icss.CompilationResult;
+import nl.han.ica.icss.Compiler;
+import nl.han.ica.icss.checker.SemanticError;
+import nl.han.ica.icss.cli.BatchCompiler;
+import nl.han.ica.icss.generator.SourceMapBuilder;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP endpoint around the Compiler, so other services do not have to start a JVM per
+ * compilation. POST /compile with ICSS as the body answers 200 with the CSS, or 422 with
+ * the errors as JSON: {"errors":[{"line":3,"column":9,"message":"..."}]}. Syntax errors and
+ * the errors of the checker have a line and column; they are left out for other errors.
+ *
+ * Every request is served on a virtual thread when the JVM has them, and on a bounded pool of
+ * platform threads otherwise. The compilations themselves run on a fixed pool of platform
+ * threads: one Compiler is shared by all requests, and its lexer and parser per thread stay
+ * warm there, where a new virtual thread would create them again for every request. At most
+ * a few compilations per thread wait for a worker; when that queue is full the server answers
+ * 503, so an overloaded server does not keep taking on work or threads.
+ *
+ * The tests run on a JDK without virtual threads, so only the platform thread path is tested.
+ *
+ * Usage: CompileServer [--port N] [--threads N]
+ */
+public class CompileServer implements Closeable {
+
+    public static final String PATH = "/compile";
+
+    private static final int DEFAULT_PORT = 8080;
+    // grotere invoer wordt geweigerd, zodat één request niet al het geheugen kan vullen
+    private static final int MAX_REQUEST_BYTES = 8 * 1024 * 1024;
+    // hoeveel compilaties er per worker mogen wachten voordat de server 503 antwoordt
+    private static final int QUEUED_PER_THREAD = 4;
+
+    private final Compiler compiler = new Compiler();
+    private final HttpServer server;
+    private final ExecutorService requests;
+    private final ExecutorService workers;
+    private final boolean virtualThreads;
+
+    /**
+     * @param port the port to listen on, 0 for any free port
+     * @param threads the number of compilations that run at the same time
+     */
+    public CompileServer(int port, int threads) throws IOException {
+        this(port, threads, threads * QUEUED_PER_THREAD);
+    }
+
+    /**
+     * @param queued the number of compilations that may wait for a worker before requests get 503
+     */
+    public CompileServer(int port, int threads, int queued) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        ExecutorService virtual = newVirtualThreadExecutor();
+        virtualThreads = virtual != null;
+        // genoeg platform threads om elke compilatie die mag wachten te bedienen, en nog zoveel om
+        // snel 503 te antwoorden; daarboven sluit de HttpServer de verbinding
+        int pending = threads + queued;
+        requests = virtualThreads ? virtual : newBoundedPool(2 * pending, 2 * pending);
+        workers = newBoundedPool(threads, queued);
+        server.setExecutor(requests);
+        server.createContext(PATH, this::handle);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = DEFAULT_PORT;
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 0; i < args.length; i++) {
+            try {
+                if (args[i].equals("--port") && i + 1 < args.length) {
+                    port = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--threads") && i + 1 < args.length) {
+                    threads = Integer.parseInt(args[++i]);
+                } else {
+                    System.exit(usage(System.out, "Unknown option: " + args[i]));
+                }
+            } catch (NumberFormatException e) {
+                System.exit(usage(System.out, "Invalid number: " + args[i]));
+            }
+        }
+        if (threads < 1) {
+            System.exit(usage(System.out, "Invalid thread count: " + threads));
+        }
+
+        CompileServer server = new CompileServer(port, threads);
+        server.start();
+        System.out.println("Listening on http://localhost:" + server.getPort() + PATH + " (" + server.getThreading() + ")");
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops accepting requests and lets running requests finish for at most a second.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        requests.shutdown();
+        workers.shutdown();
+        try {
+            workers.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return true when requests are served on virtual threads; that path is not covered by the
+     * tests, which run on a JDK without them
+     */
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * @return which threads serve the requests, for the output of the server and the LoadTest
+     */
+    public String getThreading() {
+        return virtualThreads ? "virtual threads, an untested path" : "platform threads";
+    }
+
+    // een vast aantal threads met een begrensde wachtrij; execute() gooit een RejectedExecutionException als die vol is
+    private static ExecutorService newBoundedPool(int threads, int queued) {
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                queued > 0 ? new ArrayBlockingQueue<>(queued) : new SynchronousQueue<>());
+    }
+
+    // virtuele threads bestaan pas vanaf Java 21 (daarvoor alleen als preview), en de code moet
+    // ook op oudere versies compileren; null als ze er niet zijn
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            return null;
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                send(exchange, 405, "text/plain", "Only POST is supported\n");
+                return;
+            }
+            byte[] input = readBody(exchange.getRequestBody());
+            if (input == null) {
+                send(exchange, 413, "text/plain", "Input larger than " + MAX_REQUEST_BYTES + " bytes\n");
+                return;
+            }
+
+            CompilationResult result;
+            try {
+                // parse, check, transform en generate op een worker met een warme parser
+                Future<CompilationResult> compilation = workers.submit(() -> compiler.compile(new String(input, StandardCharsets.UTF_8)));
+                result = compilation.get();
+            } catch (RejectedExecutionException e) {
+                // alle workers zijn bezig en de wachtrij is vol
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                send(exchange, 503, "text/plain", "Server busy\n");
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                send(exchange, 503, "text/plain", "Interrupted\n");
+                return;
+            } catch (ExecutionException e) {
+                send(exchange, 500, "text/plain", "Internal error: " + e.getCause() + "\n");
+                return;
+            }
+
+            if (result.getCss() != null) {
+                send(exchange, 200, "text/css; charset=utf-8", result.getCss());
+            } else {
+                send(exchange, 422, "application/json; charset=utf-8", errorsToJson(result));
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    // de body, of null als hij te groot is
+    private static byte[] readBody(InputStream body) throws IOException {
+        byte[] data = body.readNBytes(MAX_REQUEST_BYTES + 1);
+        return data.length > MAX_REQUEST_BYTES ? null : data;
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] data = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, data.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(data);
+        }
+    }
+
+    /**
+     * @return the errors of a failed compilation as JSON
+     */
+    static String errorsToJson(CompilationResult result) {
+        StringBuilder json = new StringBuilder("{\"errors\":[");
+        boolean first = true;
+        List<SemanticError> positioned = new ArrayList<>(result.getSyntaxErrors());
+        positioned.addAll(result.getSemanticErrors());
+        if (!positioned.isEmpty()) {
+            // de fouten van de parser en de checker hebben een positie
+            for (SemanticError error : positioned) {
+                json.append(first ? "" : ",").append('{');
+                if (error.line >= 0) {
+                    json.append("\"line\":").append(error.line).append(",\"column\":").append(error.column).append(',');
+                }
+                json.append("\"message\":");
+                SourceMapBuilder.appendJsonString(json, error.description);
+                json.append('}');
+                first = false;
+            }
+        } else {
+            for (String error : result.getErrors()) {
+                json.append(first ? "" : ",").append("{\"message\":");
+                SourceMapBuilder.appendJsonString(json, error);
+                json.append('}');
+                first = false;
+            }
+        }
+        return json.append("]}\n").toString();
+    }
+
+    private static int usage(PrintStream out, String message) {
+        out.println(message);
+        out.println("Usage: CompileServer [--port N] [--threads N]");
+        return BatchCompiler.EXIT_USAGE;
+    }
+}
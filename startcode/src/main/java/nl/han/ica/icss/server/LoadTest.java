@@ -0,0 +1,230 @@
+package nl.han.ica.icss.server;
+
+import nl.han.ica.icss.cli.BatchCompiler;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends the same ICSS file to a CompileServer at a fixed rate and reports the latency
+ * percentiles. The requests go out on schedule whether or not earlier ones were answered,
+ * and latency is measured from the moment a request should have been sent, so a server
+ * that falls behind shows up in the percentiles instead of lowering the rate.
+ *
+ * Without --url an embedded server is started on a free port. Before the measured run a
+ * number of requests are sent one after another, so the JIT has compiled the server first.
+ *
+ * Usage: LoadTest [--rate N] [--requests N] [--warmup N] [--url URL] file.icss
+ */
+public class LoadTest {
+
+    private static final int DEFAULT_RATE = 100;
+    private static final int DEFAULT_REQUESTS = 1000;
+    private static final int DEFAULT_WARMUP = 200;
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(TIMEOUT)
+            .build();
+    private final URI uri;
+    private final byte[] body;
+
+    /**
+     * @param uri the compile endpoint
+     * @param body the ICSS that every request sends
+     */
+    public LoadTest(URI uri, byte[] body) {
+        this.uri = uri;
+        this.body = body;
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args, System.out));
+    }
+
+    public static int run(String[] args, PrintStream out) {
+        int rate = DEFAULT_RATE;
+        int requests = DEFAULT_REQUESTS;
+        int warmup = DEFAULT_WARMUP;
+        String url = null;
+        String file = null;
+        for (int i = 0; i < args.length; i++) {
+            try {
+                if (args[i].equals("--rate") && i + 1 < args.length) {
+                    rate = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--requests") && i + 1 < args.length) {
+                    requests = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--warmup") && i + 1 < args.length) {
+                    warmup = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--url") && i + 1 < args.length) {
+                    url = args[++i];
+                } else if (args[i].startsWith("--") || file != null) {
+                    return usage(out, "Unknown option: " + args[i]);
+                } else {
+                    file = args[i];
+                }
+            } catch (NumberFormatException e) {
+                return usage(out, "Invalid number: " + args[i]);
+            }
+        }
+        if (file == null || rate < 1 || requests < 1 || warmup < 0) {
+            return usage(out, "No input given");
+        }
+
+        CompileServer server = null;
+        try {
+            byte[] body = Files.readAllBytes(Paths.get(file));
+            if (url == null) {
+                server = new CompileServer(0, Runtime.getRuntime().availableProcessors());
+                server.start();
+                url = "http://localhost:" + server.getPort() + CompileServer.PATH;
+                out.println("Started a server on " + url + " (" + server.getThreading() + ")");
+            }
+            LoadTest test = new LoadTest(URI.create(url), body);
+            test.warmUp(warmup);
+            Result result = test.run(rate, requests);
+            out.println(result);
+            return result.getFailed() == 0 ? BatchCompiler.EXIT_OK : BatchCompiler.EXIT_COMPILE_ERRORS;
+        } catch (IOException | IllegalArgumentException e) {
+            out.println("ERROR: " + e.getMessage());
+            return BatchCompiler.EXIT_USAGE;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            out.println("ERROR: interrupted");
+            return BatchCompiler.EXIT_COMPILE_ERRORS;
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+
+    /**
+     * Sends requests one after another without measuring them.
+     */
+    public void warmUp(int count) throws IOException, InterruptedException {
+        HttpRequest request = newRequest();
+        for (int i = 0; i < count; i++) {
+            client.send(request, HttpResponse.BodyHandlers.discarding());
+        }
+    }
+
+    /**
+     * Sends the requests and waits for all answers.
+     * @param rate requests per second
+     * @param count the number of requests
+     */
+    public Result run(int rate, int count) throws InterruptedException {
+        HttpRequest request = newRequest();
+        long[] latencies = new long[count];
+        AtomicInteger failed = new AtomicInteger();
+        // waarom het eerste request mislukte, om de melding te kunnen tonen
+        AtomicReference<String> firstFailure = new AtomicReference<>();
+        CompletableFuture<?>[] responses = new CompletableFuture<?>[count];
+
+        long interval = 1_000_000_000L / rate;
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            // wacht tot het geplande moment, ook als eerdere requests nog geen antwoord hebben
+            long scheduled = start + i * interval;
+            long wait;
+            while ((wait = scheduled - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+            int index = i;
+            responses[i] = client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                    .whenComplete((response, error) -> {
+                        latencies[index] = System.nanoTime() - scheduled;
+                        if (error != null || response.statusCode() != 200) {
+                            failed.incrementAndGet();
+                            firstFailure.compareAndSet(null, error != null ? error.toString() : "HTTP " + response.statusCode());
+                        }
+                    });
+        }
+        // een mislukt request is al geteld, hier wordt alleen gewacht
+        CompletableFuture.allOf(responses).exceptionally(error -> null).join();
+        long nanos = System.nanoTime() - start;
+
+        Arrays.sort(latencies);
+        return new Result(rate, latencies, failed.get(), firstFailure.get(), nanos);
+    }
+
+    private HttpRequest newRequest() {
+        return HttpRequest.newBuilder(uri)
+                .timeout(TIMEOUT)
+                .header("Content-Type", "text/plain; charset=utf-8")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+    }
+
+    /**
+     * The latencies of one run, sorted.
+     */
+    public static class Result {
+        private final int rate;
+        private final long[] latencies;
+        private final int failed;
+        private final String firstFailure;
+        private final long nanos;
+
+        Result(int rate, long[] latencies, int failed, String firstFailure, long nanos) {
+            this.rate = rate;
+            this.latencies = latencies;
+            this.failed = failed;
+            this.firstFailure = firstFailure;
+            this.nanos = nanos;
+        }
+
+        public int getCount() {
+            return latencies.length;
+        }
+
+        /**
+         * @return the number of requests that did not get a 200 answer
+         */
+        public int getFailed() {
+            return failed;
+        }
+
+        /**
+         * @param percentile between 0 and 100
+         * @return the latency that this percentage of the requests stayed within, in milliseconds
+         */
+        public double getPercentileMillis(double percentile) {
+            // nearest rank: de kleinste latency waar minstens dit percentage onder of op zit
+            int rank = (int) Math.ceil(percentile / 100 * latencies.length);
+            return latencies[Math.max(0, Math.min(latencies.length - 1, rank - 1))] / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            double seconds = nanos / 1e9;
+            return String.format("%d requests at %d/s (achieved %.1f/s): p50 %.2f ms, p99 %.2f ms, max %.2f ms, %d failed",
+                    latencies.length, rate, seconds > 0 ? latencies.length / seconds : 0.0,
+                    getPercentileMillis(50), getPercentileMillis(99), getPercentileMillis(100), failed)
+                    + (firstFailure != null ? " (first: " + firstFailure + ")" : "");
+        }
+    }
+
+    private static int usage(PrintStream out, String message) {
+        out.println(message);
+        out.println("Usage: LoadTest [--rate N] [--requests N] [--warmup N] [--url URL] file.icss");
+        return BatchCompiler.EXIT_USAGE;
+    }
+}
@@ -0,0 +1,114 @@
+package nl.han.ica.icss.transforms;
+
+import nl.han.ica.icss.ast.Literal;
+import nl.han.ica.icss.ast.Operation;
+import nl.han.ica.icss.ast.literals.ColorLiteral;
+import nl.han.ica.icss.ast.literals.PercentageLiteral;
+import nl.han.ica.icss.ast.literals.PixelLiteral;
+import nl.han.ica.icss.ast.literals.ScalarLiteral;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.operations.MultiplyOperation;
+import nl.han.ica.icss.ast.operations.SubtractOperation;
+
+/**
+ * The arithmetic of ICSS operations on literals, shared by the Evaluator and the ConstantFolder.
+ * Every method returns null when the operation is not defined for the operands.
+ *
+ * Colors are calculated per red, green and blue channel and saturate at 0 and 255;
+ * the alpha channel of the left operand is kept.
+ */
+final class Arithmetic {
+
+    private Arithmetic() { }
+
+    static Literal apply(Operation operation, Literal left, Literal right) {
+        if (operation instanceof AddOperation) {
+            return add(left, right);
+        } else if (operation instanceof SubtractOperation) {
+            return subtract(left, right);
+        } else if (operation instanceof MultiplyOperation) {
+            return multiply(left, right);
+        }
+        return null;
+    }
+
+    static Literal add(Literal left, Literal right) {
+        // + werkt op twee waarden van hetzelfde type
+        if (left instanceof PixelLiteral && right instanceof PixelLiteral) {
+            return PixelLiteral.of(((PixelLiteral) left).value + ((PixelLiteral) right).value);
+        }
+        if (left instanceof PercentageLiteral && right instanceof PercentageLiteral) {
+            return PercentageLiteral.of(((PercentageLiteral) left).value + ((PercentageLiteral) right).value);
+        }
+        if (left instanceof ScalarLiteral && right instanceof ScalarLiteral) {
+            return ScalarLiteral.of(((ScalarLiteral) left).value + ((ScalarLiteral) right).value);
+        }
+        if (left instanceof ColorLiteral && right instanceof ColorLiteral) {
+            ColorLiteral l = (ColorLiteral) left;
+            ColorLiteral r = (ColorLiteral) right;
+            return ColorLiteral.of(ColorLiteral.argb(l.alpha(), l.red() + r.red(), l.green() + r.green(), l.blue() + r.blue()));
+        }
+        // een pixel en een scalar tellen op tot een pixel
+        if (left instanceof PixelLiteral && right instanceof ScalarLiteral) {
+            return PixelLiteral.of(((PixelLiteral) left).value + ((ScalarLiteral) right).value);
+        }
+        if (left instanceof ScalarLiteral && right instanceof PixelLiteral) {
+            return PixelLiteral.of(((ScalarLiteral) left).value + ((PixelLiteral) right).value);
+        }
+        return null;
+    }
+
+    static Literal subtract(Literal left, Literal right) {
+        // - werkt op twee waarden van hetzelfde type
+        if (left instanceof PixelLiteral && right instanceof PixelLiteral) {
+            return PixelLiteral.of(((PixelLiteral) left).value - ((PixelLiteral) right).value);
+        }
+        if (left instanceof PercentageLiteral && right instanceof PercentageLiteral) {
+            return PercentageLiteral.of(((PercentageLiteral) left).value - ((PercentageLiteral) right).value);
+        }
+        if (left instanceof ScalarLiteral && right instanceof ScalarLiteral) {
+            return ScalarLiteral.of(((ScalarLiteral) left).value - ((ScalarLiteral) right).value);
+        }
+        if (left instanceof ColorLiteral && right instanceof ColorLiteral) {
+            ColorLiteral l = (ColorLiteral) left;
+            ColorLiteral r = (ColorLiteral) right;
+            return ColorLiteral.of(ColorLiteral.argb(l.alpha(), l.red() - r.red(), l.green() - r.green(), l.blue() - r.blue()));
+        }
+        // een pixel en een scalar trekken af tot een pixel
+        if (left instanceof PixelLiteral && right instanceof ScalarLiteral) {
+            return PixelLiteral.of(((PixelLiteral) left).value - ((ScalarLiteral) right).value);
+        }
+        if (left instanceof ScalarLiteral && right instanceof PixelLiteral) {
+            return PixelLiteral.of(((ScalarLiteral) left).value - ((PixelLiteral) right).value);
+        }
+        return null;
+    }
+
+    static Literal multiply(Literal left, Literal right) {
+        // bij * is minstens één kant een scalar, het resultaat heeft het type van de andere kant
+        if (left instanceof ScalarLiteral) {
+            return scale(right, ((ScalarLiteral) left).value);
+        }
+        if (right instanceof ScalarLiteral) {
+            return scale(left, ((ScalarLiteral) right).value);
+        }
+        return null;
+    }
+
+    private static Literal scale(Literal literal, int factor) {
+        if (literal instanceof PixelLiteral) {
+            return PixelLiteral.of(((PixelLiteral) literal).value * factor);
+        }
+        if (literal instanceof PercentageLiteral) {
+            return PercentageLiteral.of(((PercentageLiteral) literal).value * factor);
+        }
+        if (literal instanceof ScalarLiteral) {
+            return ScalarLiteral.of(((ScalarLiteral) literal).value * factor);
+        }
+        if (literal instanceof ColorLiteral) {
+            ColorLiteral color = (ColorLiteral) literal;
+            return ColorLiteral.of(ColorLiteral.argb(color.alpha(), color.red() * factor, color.green() * factor, color.blue() * factor));
+        }
+        return null;
+    }
+}
@@ -0,0 +1,137 @@
+package nl.han.ica.icss.transforms;
+
+import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.binding.Binder;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Optimization pass for checked ASTs. Operations on literals are replaced by their result,
+ * and references to global constants (global variables that are assigned exactly once) by
+ * their value. Equal operations on the same values, such as ParWidth + 20px in many
+ * stylerules, are computed once and share one result literal.
+ *
+ * The Evaluator gives the same output with or without this pass.
+ */
+public class ConstantFolder implements Transform {
+    // de waarde van elke globale constante per slot, null als de variabele geen constante is
+    private Literal[] constants;
+    // eerder uitgerekende operaties op literals
+    private HashMap<FoldKey, Literal> memo;
+    // hoe diep de huidige scope in de stylesheet zit, de stylesheet zelf is 0
+    private int level;
+
+    @Override
+    public void apply(AST ast) {
+        if (ast.root == null) return;
+        if (Binder.isUnbound(ast)) {
+            new Binder().bind(ast);
+        }
+        Stylesheet sheet = ast.root;
+
+        // tel hoe vaak elke globale variabele een waarde krijgt
+        int[] assignments = new int[sheet.scopeSize];
+        for (ASTNode child : sheet.body) {
+            if (child instanceof VariableAssignment) {
+                assignments[((VariableAssignment) child).name.slot]++;
+            } else if (child instanceof Import && ((Import) child).isResolved()) {
+                // een import geeft de variabele ook een waarde
+                for (VariableReference name : ((Import) child).names) {
+                    assignments[name.slot]++;
+                }
+            }
+        }
+
+        constants = new Literal[sheet.scopeSize];
+        memo = new HashMap<>();
+        level = 0;
+        for (ASTNode child : sheet.body) {
+            if (child instanceof VariableAssignment) {
+                VariableAssignment assignment = (VariableAssignment) child;
+                assignment.expression = fold(assignment.expression);
+                // alleen een variabele die één keer een literal krijgt is overal dezelfde waarde
+                if (assignments[assignment.name.slot] == 1 && assignment.expression instanceof Literal) {
+                    constants[assignment.name.slot] = (Literal) assignment.expression;
+                }
+            } else if (child instanceof Stylerule) {
+                foldBody(((Stylerule) child).body);
+            }
+        }
+    }
+
+    private void foldBody(List<ASTNode> body) {
+        level++;
+        for (ASTNode child : body) {
+            if (child instanceof Declaration) {
+                Declaration declaration = (Declaration) child;
+                declaration.expression = fold(declaration.expression);
+            } else if (child instanceof VariableAssignment) {
+                VariableAssignment assignment = (VariableAssignment) child;
+                assignment.expression = fold(assignment.expression);
+            } else if (child instanceof IfClause) {
+                IfClause ifClause = (IfClause) child;
+                ifClause.conditionalExpression = fold(ifClause.conditionalExpression);
+                foldBody(ifClause.body);
+                if (ifClause.elseClause != null) {
+                    foldBody(ifClause.elseClause.body);
+                }
+            }
+        }
+        level--;
+    }
+
+    private Expression fold(Expression expression) {
+        if (expression instanceof VariableReference) {
+            VariableReference reference = (VariableReference) expression;
+            // de referentie wijst naar de globale scope als hij precies zo ver omhoog gaat als we diep zitten
+            if (reference.depth >= 0 && reference.depth == level && constants[reference.slot] != null) {
+                return constants[reference.slot];
+            }
+            return expression;
+        } else if (expression instanceof Operation) {
+            Operation operation = (Operation) expression;
+            operation.lhs = fold(operation.lhs);
+            operation.rhs = fold(operation.rhs);
+            if (!(operation.lhs instanceof Literal) || !(operation.rhs instanceof Literal)) {
+                return operation;
+            }
+            FoldKey key = new FoldKey(operation.getClass(), (Literal) operation.lhs, (Literal) operation.rhs);
+            Literal result = memo.get(key);
+            if (result == null) {
+                result = Arithmetic.apply(operation, key.lhs, key.rhs);
+                if (result == null) return operation;
+                memo.put(key, result);
+            }
+            return result;
+        }
+        return expression;
+    }
+
+    // de soort operatie met de waarden van beide kanten
+    private static final class FoldKey {
+        private final Class<?> operation;
+        private final Literal lhs;
+        private final Literal rhs;
+
+        FoldKey(Class<?> operation, Literal lhs, Literal rhs) {
+            this.operation = operation;
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof FoldKey)) return false;
+            FoldKey that = (FoldKey) o;
+            return operation == that.operation && lhs.equals(that.lhs) && rhs.equals(that.rhs);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(operation, lhs, rhs);
+        }
+    }
+}
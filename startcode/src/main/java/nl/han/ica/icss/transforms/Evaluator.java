@@ -1,243 +1,259 @@
 package nl.han.ica.icss.transforms;
 
+import nl.han.ica.datastructures.HANFrame;
+import nl.han.ica.datastructures.IHANFrame;
 import nl.han.ica.datastructures.IHANLinkedList;
 import nl.han.ica.icss.ast.*;
 import nl.han.ica.icss.ast.literals.BoolLiteral;
-import nl.han.ica.icss.ast.literals.PercentageLiteral;
-import nl.han.ica.icss.ast.literals.PixelLiteral;
-import nl.han.ica.icss.ast.literals.ScalarLiteral;
 import nl.han.ica.icss.ast.operations.AddOperation;
 import nl.han.ica.icss.ast.operations.MultiplyOperation;
 import nl.han.ica.icss.ast.operations.SubtractOperation;
+import nl.han.ica.icss.binding.Binder;
 
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.ListIterator;
+import java.util.Map;
 
+/**
+ * Evaluates all expressions and if/else clauses. The source AST is never changed, and must
+ * already be bound, as the Compiler does when parsing: evaluate() builds a fresh, flattened
+ * AST that only contains stylerules with literal declarations, so one checked AST can be
+ * evaluated many times, also from several threads at once. Leaf nodes such as selectors,
+ * property names and literals are shared between the source and the result. New nodes take
+ * the position of the node they come from, so the result still has the source positions of
+ * the parsed AST.
+ *
+ * An Evaluator keeps the variable scopes of the current evaluation, so use one
+ * Evaluator per thread.
+ */
 public class Evaluator implements Transform {
-    // stack van scopes met variabele namen en hun waarden
-    private LinkedList<HashMap<String, Literal>> variableValues;
-
-    public Evaluator() {
-        // initialiseer variableValues
-        variableValues = new LinkedList<>();
-    }
+    // frame met de waarden van de variabelen in de huidige scope, op de slots van de Binder
+    private IHANFrame<Literal> variableValues;
+    // rekent expressies uit; statements geven null terug
+    private final ExpressionEvaluator expressions = new ExpressionEvaluator();
+    // de globale variabelen aan het einde van de laatst geëvalueerde stylesheet
+    private Map<String, Literal> globals;
 
+    /**
+     * Replaces the root of the AST by its evaluated version.
+     */
     @Override
     public void apply(AST ast) {
-        // reset variableValues voor elke nieuwe apply-aanroep
-        variableValues.clear();
-        // push een nieuwe scope voor globale variabelen
-        variableValues.add(new HashMap<>());
-        // start met het toepassen van de stylesheet
-        applyStylesheet(ast.root);
+        ast.setRoot(evaluate(ast).root);
     }
 
-    private void applyStylesheet(Stylesheet sheet) {
-        // loop door alle kinderen van stylesheet
-        for (int i = 0; i < sheet.getChildren().size(); i++) {
-            // haal het kind op
-            ASTNode child = sheet.getChildren().get(i);
-            // als het kind een stylerule is, pas de stylerule toe
-            if (child instanceof Stylerule) {
-                applyStylerule((Stylerule) child);
-            // als het kind een variabele toewijzing is, pas de toewijzing toe
-            } else if (child instanceof VariableAssignment) {
-                applyVariableAssignment((VariableAssignment) child);
-            }
+    /**
+     * Evaluates the AST without changing it.
+     * @param source a checked AST
+     * @return a new AST with only stylerules and literal declarations
+     * @throws IllegalStateException when the Binder has not run on the AST
+     */
+    public AST evaluate(AST source) {
+        // binden verandert de AST, en mag dus niet tijdens een evaluatie die andere threads ook doen
+        if (Binder.isUnbound(source)) {
+            throw new IllegalStateException("The AST is not bound, bind it when it is parsed or loaded");
         }
+        // begin elke evaluatie met een nieuw frame voor de globale variabelen
+        variableValues = new HANFrame<>(source.root.scopeSize);
+        // start met het evalueren van de stylesheet
+        AST result = new AST((Stylesheet) source.root.accept(new Evaluation()));
+        // nieuwe nodes houden het id van hun bron, zodat ze dezelfde posities delen
+        result.positions = source.positions;
+        return result;
     }
 
-    private void applyStylerule(Stylerule rule) {
-        // push nieuwe scope
-        HashMap<String, Literal> newScope = new HashMap<>();
-        // kopieer variabelen uit de bovenliggende scope
-        if (!variableValues.isEmpty()) {
-            newScope.putAll(variableValues.getLast());
-        }
-        // voeg nieuwe scope toe aan stack
-        variableValues.add(newScope);
-
-        // loop door alle kinderen van stylerule
-        List<ASTNode> children = rule.getChildren();
-        for (ASTNode child : children) {
-            // als het kind een declaratie is, pas de declaratie toe
-            if (child instanceof Declaration) {
-                applyDeclaration((Declaration) child);
-            // als het kind een variabele toewijzing is, pas de toewijzing toe
-            } else if (child instanceof VariableAssignment) {
-                applyVariableAssignment((VariableAssignment) child);
-            // als het kind een if-clause is, evalueer de if-clause
-            } else if (child instanceof IfClause) {
-                evaluateIfClause((IfClause) child, rule);
-            }
-        }
-
-        // pop scope
-        variableValues.removeLast();
+    /**
+     * @return the global variables of the last evaluated AST by name, imported ones included,
+     * with the values they have at the end of the stylesheet
+     */
+    public Map<String, Literal> getGlobals() {
+        return globals;
     }
 
-    private void evaluateIfClause(IfClause clause, Stylerule parentRule) {
-        // evalueer de conditie van de if-clause
-        Literal conditionResult = evaluateExpression(clause.conditionalExpression);
-        // als de conditie geen BoolLiteral is, return
-        if (!(conditionResult instanceof BoolLiteral)) return;
-
-        // afhankelijk van de conditie, voer de body of else-body uit
-        boolean condition = ((BoolLiteral) conditionResult).value;
-        // selecteer de juiste body
-        List<ASTNode> targetBody = condition
-                // als waar, gebruik de body van if-clause
-                ? clause.body
-                // als onwaar, gebruik de body van else-clause indien aanwezig
-                : (clause.elseClause != null ? clause.elseClause.body : null);
-        // als er geen body is om uit te voeren, return
-        if (targetBody == null) return;
-
-        // loop door alle nodes in de geselecteerde body
-        for (ASTNode node : targetBody) {
-            // als de node een declaratie is, pas de declaratie toe en voeg toe aan parent rule
-            // waarom toevoegen aan parent rule? Omdat na evaluatie van
-            // if-clause de declaraties in de parent rule moeten komen te staan
-            if (node instanceof Declaration) {
-                applyDeclaration((Declaration) node);
-                parentRule.body.add(node);
-            // als de node een variabele toewijzing is, pas de toewijzing toe
-            } else if (node instanceof VariableAssignment) {
-                applyVariableAssignment((VariableAssignment) node);
-            // als de node een if-clause is, evalueer de nested if-clause d.m.v. recursie
-            } else if (node instanceof IfClause) {
-                // gaat in recursie om geneste if-clauses te evalueren
-                evaluateIfClause((IfClause) node, parentRule);
-            }
-        }
-        // maak de if-clause leeg na evaluatie
-        clause.body.clear();
-        // zet else-clause op null na evaluatie
-        clause.elseClause = null;
+    private Literal evaluateExpression(Expression expression) {
+        // een ontbrekende expressie heeft geen waarde
+        if (expression == null) return null;
+        // de expressie kiest zelf de juiste methode van de visitor
+        return expression.accept(expressions);
     }
 
-    private void applyDeclaration(Declaration declaration) {
-        // evalueer de expressie van de declaratie
-        Literal evaluated = evaluateExpression(declaration.expression);
-        // stel de expressie van de declaratie in op de geëvalueerde waarde
-        declaration.expression = evaluated;
+    private Declaration evaluateDeclaration(Declaration declaration) {
+        // maak een nieuwe declaratie met dezelfde property
+        Declaration result = new Declaration();
+        result.takePositionOf(declaration);
+        result.property = declaration.property;
+        // de expressie wordt de geëvalueerde waarde
+        result.expression = evaluateExpression(declaration.expression);
+        return result;
     }
 
-    private void applyVariableAssignment(VariableAssignment assignment) {
-        // evalueer de expressie van de toewijzing
-        Literal evaluated = evaluateExpression(assignment.expression);
-        // als variableValues niet leeg is, voeg de variabele toe aan de meest recente scope
-        if (!variableValues.isEmpty()) {
-            variableValues.getLast().put(assignment.name.name, evaluated);
-        // anders, maak een nieuwe scope en voeg de variabele toe
-        } else {
-            HashMap<String, Literal> global = new HashMap<>();
-            global.put(assignment.name.name, evaluated);
-            variableValues.add(global);
+    // bouwt de nieuwe AST op; de velden geven aan waar geëvalueerde nodes terechtkomen
+    private class Evaluation extends BaseASTVisitor<ASTNode> {
+        // de nieuwe stylesheet
+        private Stylesheet output;
+        // waar declaraties naartoe gaan: de body van de nieuwe stylerule, of binnen een if-clause de lijst daarna
+        private List<ASTNode> declarations;
+        // declaraties uit if-clauses komen na de eigen declaraties van de stylerule
+        private List<ASTNode> fromIfClauses;
+
+        @Override
+        public ASTNode visitStylesheet(Stylesheet sheet) {
+            // de nieuwe stylesheet bevat alleen de geëvalueerde stylerules
+            output = new Stylesheet();
+            output.takePositionOf(sheet);
+            // loop door alle kinderen van stylesheet
+            for (ASTNode child : sheet.body) {
+                child.accept(this);
+            }
+            collectGlobals(sheet);
+            return output;
         }
-    }
 
-    private Literal evaluateExpression(Expression expression) {
-        // evalueer de expressie op basis van het type
-        if (expression instanceof Literal) {
-            return (Literal) expression;
-        } else if (expression instanceof AddOperation) {
-            return evaluateAddOperation((AddOperation) expression);
-        } else if (expression instanceof SubtractOperation) {
-            return evaluateSubtractOperation((SubtractOperation) expression);
-        } else if (expression instanceof MultiplyOperation) {
-            return evaluateMultiplyOperation((MultiplyOperation) expression);
-        } else if (expression instanceof VariableReference) {
-            return lookupVariable(((VariableReference) expression).name);
-        } else {
-            return null;
+        // de waarden in het globale frame zijn nu de eindwaarden; een import van dit bestand krijgt ze
+        private void collectGlobals(Stylesheet sheet) {
+            globals = new LinkedHashMap<>();
+            for (ASTNode child : sheet.body) {
+                if (child instanceof VariableAssignment) {
+                    addGlobal(((VariableAssignment) child).name);
+                } else if (child instanceof Import && ((Import) child).isResolved()) {
+                    for (VariableReference name : ((Import) child).names) {
+                        addGlobal(name);
+                    }
+                }
+            }
         }
-    }
 
-    private Literal lookupVariable(String name) {
-        // doorloop alle scopes van achter naar voren
-        // de reden waarom ik bij deze for-lus bij het einde van de lijst begin
-        // komt omdat de meest recent toegevoegde scope (de meest lokale) als laatste in de lijst staat
-        for (int i = variableValues.size() - 1; i >= 0; i--) {
-            HashMap<String, Literal> scope = variableValues.get(i);
-            if (scope.containsKey(name)) {
-                return scope.get(name);
+        private void addGlobal(VariableReference name) {
+            Literal value = variableValues.get(0, name.slot);
+            if (value != null) {
+                globals.put(name.name, value);
             }
         }
-        // als variabele niet gevonden is, return null
-        return null;
-    }
 
-    private PixelLiteral evaluateAddOperation(AddOperation expression) {
-        // evalueer linker- en rechterzijde van de som
-        Literal left = evaluateExpression((Expression) expression.lhs);
-        Literal right = evaluateExpression((Expression) expression.rhs);
+        @Override
+        public ASTNode visitImport(Import node) {
+            // de geïmporteerde variabelen zijn al uitgerekend in hun eigen bestand
+            if (!node.isResolved()) return null;
+            for (int i = 0; i < node.names.size(); i++) {
+                variableValues.set(node.names.get(i).slot, node.values.get(i));
+            }
+            return null;
+        }
 
-        // als beide zijden pixel literals zijn, tel ze op
-        if (left instanceof PixelLiteral && right instanceof PixelLiteral) {
-            int resultValue = ((PixelLiteral) left).value + ((PixelLiteral) right).value;
-            return new PixelLiteral(resultValue);
+        @Override
+        public ASTNode visitStylerule(Stylerule rule) {
+            // een stylerule binnen een andere stylerule (in een if-clause) komt niet in de CSS,
+            // en mag de declaraties van de buitenste stylerule niet overschrijven
+            if (declarations != null) return null;
+
+            // push een nieuw frame voor de stylerule
+            variableValues = new HANFrame<>(variableValues, rule.scopeSize);
+
+            // de nieuwe stylerule krijgt dezelfde selectors
+            Stylerule result = new Stylerule();
+            result.takePositionOf(rule);
+            result.selectors.addAll(rule.selectors);
+            declarations = result.body;
+            fromIfClauses = new ArrayList<>();
+
+            // loop door alle body-elementen van stylerule
+            for (ASTNode child : rule.body) {
+                child.accept(this);
+            }
+            result.body.addAll(fromIfClauses);
+            declarations = null;
+            fromIfClauses = null;
+
+            // pop het frame van de stylerule
+            variableValues = variableValues.getParent();
+            output.addChild(result);
+            return result;
         }
-        // als één zijde een pixel literal is en de andere een scalar literal, tel ze op
-        if (left instanceof PixelLiteral && right instanceof ScalarLiteral) {
-            int resultValue = ((PixelLiteral) left).value + ((ScalarLiteral) right).value;
-            return new PixelLiteral(resultValue);
+
+        @Override
+        public ASTNode visitDeclaration(Declaration declaration) {
+            // declaraties buiten een stylerule komen niet in de CSS
+            if (declarations == null) return null;
+            Declaration result = evaluateDeclaration(declaration);
+            declarations.add(result);
+            return result;
         }
-        // als één zijde een scalar literal is en de andere een pixel literal, tel ze op
-        if (left instanceof ScalarLiteral && right instanceof PixelLiteral) {
-            int resultValue = ((ScalarLiteral) left).value + ((PixelLiteral) right).value;
-            return new PixelLiteral(resultValue);
+
+        @Override
+        public ASTNode visitVariableAssignment(VariableAssignment assignment) {
+            // evalueer de expressie van de toewijzing
+            Literal evaluated = evaluateExpression(assignment.expression);
+            // sla de waarde op in de slot van de variabele in het huidige frame
+            variableValues.set(assignment.name.slot, evaluated);
+            return null;
         }
-        // als geen van bovenstaande, return de pixel literal als die er is
-        return left instanceof PixelLiteral ? (PixelLiteral) left : (right instanceof PixelLiteral ? (PixelLiteral) right : null);
-    }
 
-    private PixelLiteral evaluateSubtractOperation(SubtractOperation expression) {
-        // evalueer linker- en rechterzijde van de aftrekking
-        Literal left = evaluateExpression((Expression) expression.lhs);
-        Literal right = evaluateExpression((Expression) expression.rhs);
+        @Override
+        public ASTNode visitIfClause(IfClause clause) {
+            // evalueer de conditie van de if-clause
+            Literal conditionResult = evaluateExpression(clause.conditionalExpression);
+            // als de conditie geen BoolLiteral is, return
+            if (!(conditionResult instanceof BoolLiteral)) return null;
 
-        // als beide zijden pixel literals zijn, trek ze af
-        if (left instanceof PixelLiteral && right instanceof PixelLiteral) {
-            int resultValue = ((PixelLiteral) left).value - ((PixelLiteral) right).value;
-            return new PixelLiteral(resultValue);
+            // afhankelijk van de conditie, voer de body of else-body uit
+            if (((BoolLiteral) conditionResult).value) {
+                evaluateBody(clause.body, clause.scopeSize);
+            } else if (clause.elseClause != null) {
+                clause.elseClause.accept(this);
+            }
+            return null;
         }
-        // als één zijde een pixel literal is en de andere een scalar literal, trek ze af
-        if (left instanceof PixelLiteral && right instanceof ScalarLiteral) {
-            int resultValue = ((PixelLiteral) left).value - ((ScalarLiteral) right).value;
-            return new PixelLiteral(resultValue);
+
+        @Override
+        public ASTNode visitElseClause(ElseClause clause) {
+            evaluateBody(clause.body, clause.scopeSize);
+            return null;
         }
-        // als één zijde een scalar literal is en de andere een pixel literal, trek ze af
-        if (left instanceof ScalarLiteral && right instanceof PixelLiteral) {
-            int resultValue = ((ScalarLiteral) left).value - ((PixelLiteral) right).value;
-            return new PixelLiteral(resultValue);
+
+        private void evaluateBody(List<ASTNode> body, int scopeSize) {
+            // de if- en de else-body hebben elk een eigen scope
+            variableValues = new HANFrame<>(variableValues, scopeSize);
+            // declaraties in de body komen na evaluatie in de parent rule te staan
+            List<ASTNode> ruleDeclarations = declarations;
+            declarations = fromIfClauses;
+            // loop door alle nodes in de geselecteerde body, geneste if-clauses gaan via dezelfde visitor
+            for (ASTNode node : body) {
+                node.accept(this);
+            }
+            declarations = ruleDeclarations;
+            // pop het frame van de body
+            variableValues = variableValues.getParent();
         }
-        // als geen van bovenstaande, return de pixel literal als die er is
-        return left instanceof PixelLiteral ? (PixelLiteral) left : null;
     }
 
-    private Literal evaluateMultiplyOperation(MultiplyOperation expression) {
-        // evalueer linker- en rechterzijde van de vermenigvuldiging
-        Literal left = evaluateExpression((Expression) expression.lhs);
-        Literal right = evaluateExpression((Expression) expression.rhs);
+    private class ExpressionEvaluator extends BaseASTVisitor<Literal> {
+
+        // een literal is al uitgerekend
+        @Override
+        public Literal visitLiteral(Literal literal) {
+            return literal;
+        }
+
+        @Override
+        public Literal visitVariableReference(VariableReference reference) {
+            // een onbekende variabele heeft geen waarde
+            if (reference.depth < 0) return null;
+            return variableValues.get(reference.depth, reference.slot);
+        }
 
-        // als één zijde een scalar literal is en de andere een pixel literal, vermenigvuldig ze
-        if (left instanceof ScalarLiteral && right instanceof PixelLiteral) {
-            int resultValue = ((ScalarLiteral) left).value * ((PixelLiteral) right).value;
-            return new PixelLiteral(resultValue);
+        // evalueer linker- en rechterzijde en reken het resultaat uit
+        @Override
+        public Literal visitAddOperation(AddOperation operation) {
+            return Arithmetic.add(evaluateExpression(operation.lhs), evaluateExpression(operation.rhs));
         }
-        // als één zijde een pixel literal is en de andere een scalar literal, vermenigvuldig ze
-        if (left instanceof PixelLiteral && right instanceof ScalarLiteral) {
-            int resultValue = ((PixelLiteral) left).value * ((ScalarLiteral) right).value;
-            return new PixelLiteral(resultValue);
+        @Override
+        public Literal visitSubtractOperation(SubtractOperation operation) {
+            return Arithmetic.subtract(evaluateExpression(operation.lhs), evaluateExpression(operation.rhs));
         }
-        // als beide zijden scalar literals zijn, vermenigvuldig ze
-        if (left instanceof ScalarLiteral && right instanceof ScalarLiteral) {
-            return new ScalarLiteral(((ScalarLiteral) left).value * ((ScalarLiteral) right).value);
+        @Override
+        public Literal visitMultiplyOperation(MultiplyOperation operation) {
+            return Arithmetic.multiply(evaluateExpression(operation.lhs), evaluateExpression(operation.rhs));
         }
-        // als geen van bovenstaande, return de pixel literal als die er is
-        return left != null ? left : right;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,102 @@
+package nl.han.ica.icss;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompilerTest {
+
+	String readTestFile(String resource) throws IOException {
+		ClassLoader classLoader = this.getClass().getClassLoader();
+		try (InputStream inputStream = classLoader.getResourceAsStream(resource)) {
+			return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
+
+	@Test
+	void testCompileReportsErrorsPerCall() {
+		Compiler compiler = new Compiler();
+
+		CompilationResult bad = compiler.compile("p { width: Undefined; }");
+		CompilationResult good = compiler.compile("p { width: 10px; }");
+
+		assertTrue(bad.isParsed());
+		assertFalse(bad.isChecked());
+		assertNull(bad.getCss());
+		assertEquals(2, bad.getErrors().size());
+		assertTrue(good.getErrors().isEmpty());
+		assertEquals("p {\n  width: 10px;\n}\n", good.getCss());
+	}
+
+	@Test
+	void testSemanticErrorsHaveSourcePositions() {
+		CompilationResult result = new Compiler().compile("p {\n  width: 10px;\n  color: Undefined;\n}\n");
+
+		assertFalse(result.isChecked());
+		assertEquals(List.of(
+				"ERROR: line 3:9 Variable Undefined is not defined or this selector cannot access it",
+				"ERROR: line 3:2 Only color literals can be assigned to color property"),
+				result.getErrors());
+	}
+
+	@Test
+	void testCompileReportsSyntaxErrors() {
+		CompilationResult result = new Compiler().compile("p { width: 10px }");
+
+		assertFalse(result.isParsed());
+		assertTrue(result.getErrors().get(0).startsWith("Syntax error"));
+	}
+
+	@Test
+	void testSllFallbackOnlyForInvalidInput() throws IOException {
+		Compiler compiler = new Compiler();
+
+		compiler.compile(readTestFile("level3.icss"));
+		assertEquals(0, compiler.getSllFallbackCount());
+
+		CompilationResult result = compiler.compile("p { width: 10px } a { color: #ff0000; }");
+		assertEquals(1, compiler.getSllFallbackCount());
+		assertEquals(2, compiler.getParseCount());
+		assertEquals(1, result.getErrors().size());
+	}
+
+	@Test
+	void testParseModesBuildTheSameAST() throws IOException {
+		String input = readTestFile("level3.icss") + "div { if[TRUE] { height: 50% + 10%; } }";
+
+		CompilationResult direct = new Compiler(Compiler.ParseMode.DIRECT).parse(input);
+		CompilationResult parseTree = new Compiler(Compiler.ParseMode.PARSE_TREE).parse(input);
+
+		assertEquals(parseTree.getAST(), direct.getAST());
+		assertEquals(parseTree.getAST().toString(), direct.getAST().toString());
+	}
+
+	@Test
+	void testSharedCompilerIsThreadSafe() throws Exception {
+		Compiler compiler = new Compiler();
+		String input = readTestFile("level3.icss");
+		String expected = compiler.compile(input).getCss();
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<String>> futures = new ArrayList<>();
+			for (int i = 0; i < 200; i++) {
+				futures.add(executor.submit(() -> compiler.compile(input).getCss()));
+			}
+			for (Future<String> future : futures) {
+				assertEquals(expected, future.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,146 @@
+package nl.han.ica.icss;
+
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.ASTNode;
+import nl.han.ica.icss.ast.Declaration;
+import nl.han.ica.icss.ast.Stylerule;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IncrementalParserTest {
+
+	String readTestFile(String resource) throws IOException {
+		ClassLoader classLoader = this.getClass().getClassLoader();
+		try (InputStream inputStream = classLoader.getResourceAsStream(resource)) {
+			return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
+
+	@Test
+	void testSameAstAsFullParse() throws IOException {
+		String input = readTestFile("level3.icss");
+		IncrementalParser parser = new IncrementalParser();
+
+		CompilationResult result = parser.parse(input);
+		assertTrue(result.isParsed(), result.getErrors().toString());
+		assertEquals(new Compiler().parse(input).getAST(), result.getAST());
+
+		// an edit in the last rule only reparses that rule
+		String edited = input.substring(0, input.lastIndexOf('}')) + "  width: 10px;\n}\n";
+		CompilationResult again = parser.parse(edited);
+		assertEquals(new Compiler().parse(edited).getAST(), again.getAST());
+		assertEquals(1, parser.getParsedCount());
+		assertEquals(result.getAST().root.body.size() - 1, parser.getReusedCount());
+		assertSame(result.getAST().root.body.get(0), again.getAST().root.body.get(0));
+	}
+
+	@Test
+	void testAcceptsTheSameInputAsFullParse() {
+		String[] inputs = {
+				"@import \"a.icss\";\np { width: 1px; }\n",
+				"p { width: 1px; }\n@import \"a.icss\";\na { width: 2px; }\n",
+				"p { width: 1px; } }\na { width: 2px; }\n",
+				"p { width: 1px; }\n5;\na { width: 2px; }\n",
+				"p { width: ; }\na { width: 2px; }\n",
+		};
+		for (String input : inputs) {
+			CompilationResult full = new Compiler().parse(input);
+			CompilationResult incremental = new IncrementalParser().parse(input);
+
+			assertEquals(full.isParsed(), incremental.isParsed(), input);
+			assertEquals(full.getErrors().isEmpty(), incremental.getErrors().isEmpty(), input);
+			assertEquals(full.getAST(), incremental.getAST(), input);
+		}
+	}
+
+	@Test
+	void testSyntaxErrorsHaveFilePositions() {
+		String input = "p { width: 1px; }\na {\n  width: ; }\n";
+		CompilationResult full = new Compiler().parse(input);
+		CompilationResult incremental = new IncrementalParser().parse(input);
+
+		assertFalse(full.getSyntaxErrors().isEmpty());
+		assertEquals(full.getSyntaxErrors().toString(), incremental.getSyntaxErrors().toString());
+	}
+
+	@Test
+	void testPositionsMoveWithReusedStatements() {
+		IncrementalParser parser = new IncrementalParser();
+		parser.parse("p {\n  width: 10px;\n}\n");
+		CompilationResult result = parser.parse("a {\n  color: #ff0000;\n}\n\np {\n  width: 10px;\n}\n");
+		AST ast = result.getAST();
+
+		Stylerule rule = (Stylerule) ast.root.body.get(1);
+		Declaration width = (Declaration) rule.body.get(0);
+		assertEquals(1, parser.getReusedCount());
+		assertEquals(6, ast.positions.getLine(width.getPositionId()));
+		assertEquals(2, ast.positions.getColumn(width.getPositionId()));
+		assertEquals(31, ast.positions.getStart(width.getPositionId()));
+		assertEquals(43, ast.positions.getStop(width.getPositionId()));
+	}
+
+	@Test
+	void testEarlierResultKeepsItsPositions() {
+		IncrementalParser parser = new IncrementalParser();
+		AST first = parser.parse("p {\n  width: 10px;\n}\n").getAST();
+		Declaration width = (Declaration) ((Stylerule) first.root.body.get(0)).body.get(0);
+		int id = width.getPositionId();
+
+		AST second = parser.parse("a {\n  color: #ff0000;\n}\n\np {\n  width: 10px;\n}\n").getAST();
+		assertSame(width, ((Stylerule) second.root.body.get(1)).body.get(0));
+		// the reused node is not renumbered, each AST has its own position for it
+		assertEquals(id, width.getPositionId());
+		assertEquals(2, first.positions.getLine(width.getPositionId()));
+		assertEquals(6, second.positions.getLine(width.getPositionId()));
+	}
+
+	@Test
+	void testNothingToReuseParsesAsAWhole() {
+		Compiler compiler = new Compiler();
+		IncrementalParser parser = new IncrementalParser(compiler);
+
+		parser.parse("p { width: 1px; }\na { width: 2px; }\n");
+		assertEquals(1, compiler.getParseCount());
+		assertEquals(2, parser.getParsedCount());
+
+		// the statements of the whole parse are kept for the next one
+		parser.parse("p { width: 1px; }\na { width: 3px; }\n");
+		assertEquals(2, compiler.getParseCount());
+		assertEquals(1, parser.getReusedCount());
+
+		// a full paste has nothing in common with the previous text
+		parser.parse("b { width: 4px; }\ni { width: 5px; }\n");
+		assertEquals(3, compiler.getParseCount());
+		assertEquals(0, parser.getReusedCount());
+	}
+
+	@Test
+	void testRecheckOnlyWhenGlobalTypeChanges() {
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString("A := 10px;\np { width: A; }\n");
+		assertTrue(pipeline.check(), pipeline.getErrors().toString());
+		ASTNode rule = pipeline.getAST().root.body.get(1);
+
+		pipeline.parseString("A := 10%;\np { width: A; }\n");
+		assertSame(rule, pipeline.getAST().root.body.get(1));
+		assertFalse(pipeline.check());
+		assertEquals(List.of("ERROR: line 2:4 Only pixel literals can be assigned to width property"),
+				pipeline.getErrors());
+
+		// the cached error moves along with its rule
+		pipeline.parseString("A := 10%;\n\np { width: A; }\n");
+		assertFalse(pipeline.check());
+		assertEquals(List.of("ERROR: line 3:4 Only pixel literals can be assigned to width property"),
+				pipeline.getErrors());
+
+		pipeline.parseString("A := 20px;\n\np { width: A; }\n");
+		assertTrue(pipeline.check(), pipeline.getErrors().toString());
+		assertFalse(((Stylerule) pipeline.getAST().root.body.get(1)).body.get(0).hasError());
+	}
+}
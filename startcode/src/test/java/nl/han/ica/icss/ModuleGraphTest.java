@@ -0,0 +1,123 @@
+package nl.han.ica.icss;
+
+import nl.han.ica.icss.ast.Import;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ModuleGraphTest {
+
+	@TempDir
+	Path directory;
+
+	Path write(String name, String content) throws IOException {
+		Path file = directory.resolve(name);
+		Files.createDirectories(file.getParent());
+		return Files.writeString(file, content);
+	}
+
+	String css(ModuleGraph.Module module) throws IOException {
+		StringBuilder css = new StringBuilder();
+		new Compiler().generate(module.getResult(), css);
+		return css.toString();
+	}
+
+	@Test
+	void testSharedModuleIsCompiledOnce() throws IOException {
+		write("vars.icss", "Main := #ff0000;\nWidth := 10px;\nWidth := Width + 10px;\np { width: Width; }\n");
+		Path first = write("first.icss", "@import \"vars.icss\";\na { color: Main; }\n");
+		// the imported value is used before the file assigns its own, so it is no constant
+		Path second = write("nested/second.icss", "@import \"../vars.icss\";\nb { width: Width; }\nWidth := 5px;\nc { width: Width; }\n");
+
+		Compiler compiler = new Compiler();
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			ModuleGraph graph = new ModuleGraph(compiler, pool);
+			Map<Path, ModuleGraph.Module> modules = graph.compileAll(List.of(first, second));
+
+			assertTrue(modules.get(first).getResult().isTransformed(), modules.get(first).getResult().getErrors().toString());
+			assertEquals("a {\n  color: #ff0000;\n}\n", css(modules.get(first)));
+			assertEquals("b {\n  width: 20px;\n}\nc {\n  width: 5px;\n}\n", css(modules.get(second)));
+			// the imported file is parsed once for both importers, and its rules are not part of them
+			assertEquals(3, graph.getModuleCount());
+			assertEquals(3, compiler.getParseCount());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	void testCompileEachReleasesWrittenModules() throws IOException {
+		write("vars.icss", "Main := #ff0000;\n");
+		Path first = write("first.icss", "@import \"vars.icss\";\na { color: Main; }\n");
+		Path second = write("second.icss", "@import \"vars.icss\";\nb { background-color: Main; }\n");
+
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			ModuleGraph graph = new ModuleGraph(new Compiler(), pool);
+			Map<Path, String> written = new ConcurrentHashMap<>();
+			List<ModuleGraph.Module> handed = new CopyOnWriteArrayList<>();
+			graph.compileEach(List.of(first, second), (file, module) -> {
+				try {
+					written.put(file, css(module));
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				handed.add(module);
+			});
+
+			assertEquals(Map.of(first, "a {\n  color: #ff0000;\n}\n", second, "b {\n  background-color: #ff0000;\n}\n"), written);
+			// after writing only the globals are kept, for the modules that import them
+			for (ModuleGraph.Module module : handed) {
+				assertNull(module.getResult());
+				assertNull(module.getInput());
+				assertNotNull(module.getGlobals());
+			}
+			assertEquals(3, graph.getModuleCount());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	void testImportCycleIsReported() throws IOException {
+		Path first = write("first.icss", "@import \"second.icss\";\nA := 1px;\n");
+		Path second = write("second.icss", "@import \"first.icss\";\nB := 2px;\n");
+		Path self = write("self.icss", "@import \"self.icss\";\n");
+
+		ExecutorService pool = Executors.newFixedThreadPool(2);
+		try {
+			Map<Path, ModuleGraph.Module> modules = new ModuleGraph(new Compiler(), pool).compileAll(List.of(first, second, self));
+
+			assertEquals(List.of("ERROR: Import cycle: first.icss -> second.icss -> first.icss"),
+					modules.get(first).getResult().getErrors());
+			assertEquals(List.of("ERROR: Import cycle: first.icss -> second.icss -> first.icss"),
+					modules.get(second).getResult().getErrors());
+			assertEquals(List.of("ERROR: Import cycle: self.icss -> self.icss"),
+					modules.get(self).getResult().getErrors());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	void testImportWithoutGraphIsUnresolved() {
+		CompilationResult result = new Compiler().compile("@import \"vars.icss\";\np { width: 10px; }\n");
+
+		assertTrue(result.isParsed());
+		assertEquals(new Import("vars.icss"), result.getAST().root.body.get(0));
+		assertEquals(List.of("ERROR: line 1:0 Import vars.icss could not be resolved"), result.getErrors());
+	}
+}
@@ -0,0 +1,58 @@
+package nl.han.ica.icss.ast;
+
+import nl.han.ica.icss.ast.literals.PixelLiteral;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.parser.Fixtures;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ASTNodeTest {
+
+	void assertSameChildren(ASTNode node) {
+		List<ASTNode> children = node.getChildren();
+		assertEquals(children.size(), node.childCount(), node.getNodeLabel());
+		for (int i = 0; i < children.size(); i++) {
+			assertSame(children.get(i), node.child(i));
+			assertSameChildren(children.get(i));
+		}
+	}
+
+	@Test
+	void testIndexedChildrenMatchGetChildren() {
+		assertSameChildren(Fixtures.uncheckedLevel0().root);
+		assertSameChildren(Fixtures.uncheckedLevel1().root);
+		assertSameChildren(Fixtures.uncheckedLevel2().root);
+		assertSameChildren(Fixtures.uncheckedLevel3().root);
+	}
+
+	@Test
+	void testIndexedChildrenSkipMissingChildren() {
+		Declaration declaration = new Declaration();
+		declaration.expression = new VariableReference("Width");
+
+		assertEquals(1, declaration.childCount());
+		assertSame(declaration.expression, declaration.child(0));
+		assertThrows(IndexOutOfBoundsException.class, () -> declaration.child(1));
+	}
+
+	@Test
+	void testAcceptCallsTheMostSpecificMethod() {
+		BaseASTVisitor<String> visitor = new BaseASTVisitor<>() {
+			@Override
+			public String visitLiteral(Literal node) {
+				return "literal";
+			}
+			@Override
+			public String visitAddOperation(AddOperation node) {
+				return "add";
+			}
+		};
+
+		assertEquals("literal", PixelLiteral.of(10).accept(visitor));
+		assertEquals("add", new AddOperation().accept(visitor));
+		assertNull(new VariableReference("Width").accept(visitor));
+	}
+}
@@ -0,0 +1,129 @@
+package nl.han.ica.icss.ast;
+
+import nl.han.ica.icss.CompilationResult;
+import nl.han.ica.icss.Compiler;
+import nl.han.ica.icss.ast.literals.PixelLiteral;
+import nl.han.ica.icss.ast.selectors.TagSelector;
+import nl.han.ica.icss.binding.Binder;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryASTTest {
+
+	String readTestFile(String resource) throws IOException {
+		ClassLoader classLoader = this.getClass().getClassLoader();
+		try (InputStream inputStream = classLoader.getResourceAsStream(resource)) {
+			return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
+
+	void assertSamePositions(AST expected, AST actual, ASTNode expectedNode, ASTNode actualNode) {
+		assertEquals(expected.positions.contains(expectedNode), actual.positions.contains(actualNode));
+		if (expected.positions.contains(expectedNode)) {
+			assertEquals(expected.positions.getLine(expectedNode.getPositionId()), actual.positions.getLine(actualNode.getPositionId()));
+			assertEquals(expected.positions.getColumn(expectedNode.getPositionId()), actual.positions.getColumn(actualNode.getPositionId()));
+			assertEquals(expected.positions.getStart(expectedNode.getPositionId()), actual.positions.getStart(actualNode.getPositionId()));
+			assertEquals(expected.positions.getStop(expectedNode.getPositionId()), actual.positions.getStop(actualNode.getPositionId()));
+		}
+		for (int i = 0; i < expectedNode.childCount(); i++) {
+			assertSamePositions(expected, actual, expectedNode.child(i), actualNode.child(i));
+		}
+	}
+
+	@Test
+	void testRoundTripOfCheckedLevels() throws IOException {
+		Compiler compiler = new Compiler();
+		for (String level : new String[]{"level0.icss", "level1.icss", "level2.icss", "level3.icss"}) {
+			String input = readTestFile(level);
+			CompilationResult checked = compiler.parse(input);
+			assertTrue(compiler.check(checked), level);
+
+			AST loaded = BinaryAST.read(BinaryAST.write(checked.getAST()));
+
+			assertEquals(checked.getAST(), loaded, level);
+			assertSamePositions(checked.getAST(), loaded, checked.getAST().root, loaded.root);
+			// the loaded tree is still bound, so it goes straight to transform and generate
+			CompilationResult result = compiler.checked(loaded);
+			compiler.transform(result);
+			StringBuilder css = new StringBuilder();
+			compiler.generate(result, css);
+			assertEquals(compiler.compile(input).getCss(), css.toString(), level);
+		}
+	}
+
+	@Test
+	void testRoundTripOfResolvedImport() throws IOException {
+		Import imported = new Import("vars.icss");
+		imported.resolve(Map.of("Width", PixelLiteral.of(10)));
+		Declaration declaration = new Declaration("width");
+		declaration.expression = new VariableReference("Width");
+		Stylerule rule = new Stylerule(new TagSelector("p"), new ArrayList<>());
+		rule.body.add(declaration);
+		AST ast = new AST();
+		ast.root.addChild(imported);
+		ast.root.addChild(rule);
+		new Binder().bind(ast);
+
+		AST loaded = BinaryAST.read(BinaryAST.write(ast));
+
+		assertEquals(ast, loaded);
+		assertNull(loaded.positions);
+		Import loadedImport = (Import) loaded.root.body.get(0);
+		assertEquals("Width", loadedImport.names.get(0).name);
+		assertSame(PixelLiteral.of(10), loadedImport.values.get(0));
+		VariableReference reference = (VariableReference) ((Declaration) ((Stylerule) loaded.root.body.get(1)).body.get(0)).expression;
+		assertEquals(0, reference.slot);
+		assertEquals(1, reference.depth);
+	}
+
+	@Test
+	void testRejectsOtherData() {
+		assertThrows(IOException.class, () -> BinaryAST.read("p { width: 10px; }".getBytes(StandardCharsets.UTF_8)));
+
+		byte[] data = BinaryAST.write(new Compiler().parse("p { width: 10px; }").getAST());
+		data[4] = 99;
+		IOException version = assertThrows(IOException.class, () -> BinaryAST.read(data));
+		assertTrue(version.getMessage().contains("version"));
+
+		byte[] truncated = Arrays.copyOf(BinaryAST.write(new Compiler().parse("p { width: 10px; }").getAST()), 12);
+		assertThrows(IOException.class, () -> BinaryAST.read(truncated));
+	}
+
+	@Test
+	void testRejectsCorruptData() throws IOException {
+		byte[] valid = BinaryAST.write(new Compiler().parse(readTestFile("level3.icss")).getAST());
+		for (int length = 0; length < valid.length; length++) {
+			byte[] truncated = Arrays.copyOf(valid, length);
+			assertThrows(IOException.class, () -> BinaryAST.read(truncated), "truncated to " + length);
+		}
+
+		// a negative and a huge number of strings, as five byte varints
+		byte[] negative = {'I', 'C', 'S', 'B', BinaryAST.VERSION, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x0f};
+		assertThrows(IOException.class, () -> BinaryAST.read(negative));
+		byte[] huge = {'I', 'C', 'S', 'B', BinaryAST.VERSION, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x07};
+		assertThrows(IOException.class, () -> BinaryAST.read(huge));
+
+		// garbage after a valid header is rejected with an IOException or read as some tree, never anything else
+		Random random = new Random(42);
+		for (int i = 0; i < 1000; i++) {
+			byte[] garbage = Arrays.copyOf(valid, 8 + random.nextInt(64));
+			for (int j = 5; j < garbage.length; j++) {
+				garbage[j] = (byte) random.nextInt(256);
+			}
+			try {
+				BinaryAST.read(garbage);
+			} catch (IOException expected) {
+				// rejected
+			}
+		}
+	}
+}
@@ -0,0 +1,47 @@
+package nl.han.ica.icss.ast;
+
+import nl.han.ica.icss.CompilationResult;
+import nl.han.ica.icss.Compiler;
+import nl.han.ica.icss.ast.literals.*;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LiteralTest {
+
+	@Test
+	void testFactoriesShareCommonValues() {
+		assertSame(PixelLiteral.of(0), PixelLiteral.of("0px"));
+		assertSame(PercentageLiteral.of(100), PercentageLiteral.of("100%"));
+		assertSame(ScalarLiteral.of(-2), ScalarLiteral.of("-2"));
+		assertSame(BoolLiteral.TRUE, BoolLiteral.of(true));
+		assertSame(ColorLiteral.of("#ff0000"), ColorLiteral.of("#ff0000"));
+	}
+
+	@Test
+	void testFactoriesCreateLargeValues() {
+		assertEquals(PixelLiteral.of(100000), PixelLiteral.of(100000));
+		assertNotSame(PixelLiteral.of(100000), PixelLiteral.of(100000));
+	}
+
+	@Test
+	void testParsedLiteralsAreShared() {
+		CompilationResult result = new Compiler().parse("p { width: 10px; color: #ffffff; } a { width: 10px; color: #ffffff; }");
+		Stylerule p = (Stylerule) result.getAST().root.body.get(0);
+		Stylerule a = (Stylerule) result.getAST().root.body.get(1);
+
+		for (int i = 0; i < 2; i++) {
+			assertSame(((Declaration) p.body.get(i)).expression, ((Declaration) a.body.get(i)).expression);
+		}
+	}
+
+	@Test
+	void testColorsArePackedAsArgb() {
+		ColorLiteral color = ColorLiteral.of("#FF8000");
+
+		assertEquals(0xffff8000, color.value);
+		assertSame(color, ColorLiteral.of("#ff8000"));
+		assertEquals(0x80, ColorLiteral.of("#ff800080").alpha());
+		assertEquals(0xff, ColorLiteral.argb(0xff, 300, 0, -5) >> 16 & 0xff);
+	}
+}
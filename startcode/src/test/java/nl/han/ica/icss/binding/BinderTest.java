@@ -0,0 +1,60 @@
+package nl.han.ica.icss.binding;
+
+import nl.han.ica.icss.CompilationResult;
+import nl.han.ica.icss.Compiler;
+import nl.han.ica.icss.ast.*;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinderTest {
+
+	AST parse(String input) {
+		CompilationResult result = new Compiler().parse(input);
+		assertTrue(result.isParsed(), result.getErrors().toString());
+		return result.getAST();
+	}
+
+	@Test
+	void testBindAssignsSlotsPerScope() {
+		AST ast = parse("A := 1px; B := 2px; A := 3px; p { C := A; width: C; }");
+
+		assertEquals(2, ast.root.scopeSize);
+		Stylerule rule = (Stylerule) ast.root.body.get(3);
+		assertEquals(1, rule.scopeSize);
+
+		VariableAssignment assignment = (VariableAssignment) rule.body.get(0);
+		VariableReference a = (VariableReference) assignment.expression;
+		assertEquals(1, a.depth);
+		assertEquals(0, a.slot);
+		VariableReference c = (VariableReference) ((Declaration) rule.body.get(1)).expression;
+		assertEquals(0, c.depth);
+		assertEquals(0, c.slot);
+	}
+
+	@Test
+	void testBindIsLexical() {
+		AST ast = parse("p { W := 10px; if[TRUE] { width: W; } else { width: U; } }");
+
+		IfClause ifClause = (IfClause) ((Stylerule) ast.root.body.get(0)).body.get(1);
+		VariableReference w = (VariableReference) ((Declaration) ifClause.body.get(0)).expression;
+		assertEquals(1, w.depth);
+		VariableReference u = (VariableReference) ((Declaration) ifClause.elseClause.body.get(0)).expression;
+		assertEquals(-1, u.depth);
+	}
+
+	@Test
+	void testReferenceBeforeLocalAssignmentUsesOuterScope() {
+		CompilationResult result = new Compiler().compile("W := 10px; p { width: W; W := 20px; height: W; }");
+
+		assertEquals("p {\n  width: 10px;\n  height: 20px;\n}\n", result.getCss());
+	}
+
+	@Test
+	void testRuleVariablesAreVisibleInIfBodies() {
+		CompilationResult result = new Compiler().compile("p { W := 10px; if[TRUE] { width: W; } }");
+
+		assertTrue(result.getErrors().isEmpty(), result.getErrors().toString());
+		assertEquals("p {\n  width: 10px;\n}\n", result.getCss());
+	}
+}
@@ -0,0 +1,104 @@
+package nl.han.ica.icss.cache;
+
+import nl.han.ica.icss.CompilationResult;
+import nl.han.ica.icss.Compiler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompilationCacheTest {
+
+	@TempDir
+	Path directory;
+
+	byte[] bytes(String text) {
+		return text.getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Test
+	void testGetReturnsWhatWasPut() throws IOException {
+		CompilationCache cache = new CompilationCache(directory, 1024 * 1024);
+
+		assertNull(cache.get(bytes("p { width: 10px; }")));
+		cache.put(bytes("p { width: 10px; }"), "p {\n  width: 10px;\n}\n");
+
+		assertEquals("p {\n  width: 10px;\n}\n", cache.get(bytes("p { width: 10px; }")));
+		assertNull(cache.get(bytes("p { width: 20px; }")));
+		assertEquals(1, cache.getHitCount());
+		assertEquals(2, cache.getMissCount());
+		assertNotEquals(CompilationCache.key(bytes("a")), CompilationCache.key(bytes("b")));
+	}
+
+	@Test
+	void testStoresCheckedAst() throws IOException {
+		CompilationCache cache = new CompilationCache(directory, 1024 * 1024);
+		Compiler compiler = new Compiler();
+		CompilationResult result = compiler.parse("A := 10px;\np { width: A + 5px; }\n");
+		assertTrue(compiler.check(result));
+
+		assertNull(cache.getAST(bytes("A := 10px;\np { width: A + 5px; }\n")));
+		cache.putAST(bytes("A := 10px;\np { width: A + 5px; }\n"), result.getAST());
+
+		assertEquals(result.getAST(), cache.getAST(bytes("A := 10px;\np { width: A + 5px; }\n")));
+		// the CSS and the AST of an input are separate entries
+		assertNull(cache.get(bytes("A := 10px;\np { width: A + 5px; }\n")));
+	}
+
+	@Test
+	void testEvictsLeastRecentlyUsed() throws IOException {
+		CompilationCache cache = new CompilationCache(directory, 250);
+		String css = "x".repeat(100);
+		cache.put(bytes("first"), css);
+		cache.put(bytes("second"), css);
+		// make the first entry the most recently used one
+		Files.setLastModifiedTime(directory.resolve(CompilationCache.key(bytes("second")) + ".css"), FileTime.fromMillis(1000));
+		Files.setLastModifiedTime(directory.resolve(CompilationCache.key(bytes("first")) + ".css"), FileTime.fromMillis(2000));
+
+		cache.put(bytes("third"), css);
+
+		assertEquals(css, cache.get(bytes("first")));
+		assertNull(cache.get(bytes("second")));
+		assertEquals(css, cache.get(bytes("third")));
+		assertTrue(cache.count() <= 250);
+	}
+
+	@Test
+	void testConcurrentWorkers() throws Exception {
+		CompilationCache cache = new CompilationCache(directory, 1024 * 1024);
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < 200; i++) {
+				String input = "input" + (i % 10);
+				futures.add(pool.submit(() -> {
+					cache.put(bytes(input), input.repeat(1000));
+					String css = cache.get(bytes(input));
+					// an entry is always complete, never half written
+					assertEquals(input.repeat(1000), css);
+					return null;
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			pool.shutdown();
+		}
+		try (Stream<Path> files = Files.list(directory)) {
+			assertEquals(10, files.count());
+		}
+	}
+}
@@ -0,0 +1,125 @@
+package nl.han.ica.icss.cli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchCompilerTest {
+
+	@TempDir
+	Path directory;
+
+	ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+	int run(String... args) {
+		return BatchCompiler.run(args, new PrintStream(output, true));
+	}
+
+	@Test
+	void testFindSourcesExpandsDirectoriesAndGlobs() throws IOException {
+		Path nested = Files.createDirectories(directory.resolve("nested"));
+		Path deeper = Files.createDirectories(nested.resolve("deeper"));
+		Path top = Files.writeString(directory.resolve("top.icss"), "");
+		Path inNested = Files.writeString(nested.resolve("a.icss"), "");
+		Path inDeeper = Files.writeString(deeper.resolve("b.icss"), "");
+		Files.writeString(nested.resolve("notes.txt"), "");
+
+		assertEquals(List.of(inNested, inDeeper, top), BatchCompiler.findSources(directory.toString()));
+		assertEquals(List.of(inNested), BatchCompiler.findSources(nested + "/*.icss"));
+		assertEquals(List.of(inNested, inDeeper), BatchCompiler.findSources(nested + "/**.icss"));
+		assertEquals(List.of(top), BatchCompiler.findSources(top.toString()));
+	}
+
+	@Test
+	void testFindSourcesRejectsOtherFiles() throws IOException {
+		Path text = Files.writeString(directory.resolve("foo.txt"), "");
+
+		assertThrows(IOException.class, () -> BatchCompiler.findSources(text.toString()));
+		assertThrows(IOException.class, () -> BatchCompiler.findSources(directory.resolve("missing").toString()));
+	}
+
+	@Test
+	void testTargetOf() {
+		assertEquals(Paths.get("styles", "foo.css"), BatchCompiler.targetOf(Paths.get("styles", "foo.icss")));
+		assertEquals(Paths.get("foo.css.map"), BatchCompiler.mapOf(Paths.get("foo.css")));
+		assertThrows(IllegalArgumentException.class, () -> BatchCompiler.targetOf(Paths.get("foo.txt")));
+	}
+
+	@Test
+	void testExitCodes() throws IOException {
+		Files.writeString(directory.resolve("good.icss"), "p { width: 10px; }\n");
+		assertEquals(BatchCompiler.EXIT_OK, run("--quiet", directory.toString()));
+		assertEquals("p {\n  width: 10px;\n}\n", Files.readString(directory.resolve("good.css")));
+
+		Files.writeString(directory.resolve("bad.icss"), "p { color: Undefined; }\n");
+		assertEquals(BatchCompiler.EXIT_COMPILE_ERRORS, run("--quiet", directory.toString()));
+		assertTrue(output.toString().contains("FAIL " + directory.resolve("bad.icss")), output.toString());
+	}
+
+	@Test
+	void testOverlappingInputsCompileOnce() throws IOException {
+		Files.writeString(directory.resolve("good.icss"), "p { width: 10px; }\n");
+
+		assertEquals(BatchCompiler.EXIT_OK, run(directory.toString(), directory + "/**.icss", directory.resolve("good.icss").toString()));
+		assertTrue(output.toString().contains("\n1 files, 0 failed"), output.toString());
+	}
+
+	@Test
+	void testSourceMapRunUsesCachedAst() throws IOException {
+		Path sources = Files.createDirectories(directory.resolve("sources"));
+		Files.writeString(sources.resolve("style.icss"), "W := 10px;\np {\n  width: W + 5px;\n}\n");
+		String cache = directory.resolve("cache").toString();
+
+		assertEquals(BatchCompiler.EXIT_OK, run("--quiet", "--source-map", "--cache", cache, sources.toString()));
+		String css = Files.readString(sources.resolve("style.css"));
+		String map = Files.readString(sources.resolve("style.css.map"));
+		Files.delete(sources.resolve("style.css"));
+		Files.delete(sources.resolve("style.css.map"));
+
+		// the second run generates the CSS and the map from the stored AST
+		output.reset();
+		assertEquals(BatchCompiler.EXIT_OK, run("--quiet", "--source-map", "--cache", cache, sources.toString()));
+		assertTrue(output.toString().contains("Cache hits: 1 of 1"), output.toString());
+		assertTrue(output.toString().contains("Modules compiled: 0"), output.toString());
+		assertEquals(css, Files.readString(sources.resolve("style.css")));
+		assertEquals(map, Files.readString(sources.resolve("style.css.map")));
+	}
+
+	@Test
+	void testUsageErrors() throws IOException {
+		Path text = Files.writeString(directory.resolve("foo.txt"), "");
+
+		assertEquals(BatchCompiler.EXIT_USAGE, run());
+		assertTrue(output.toString().startsWith("No input given"), output.toString());
+
+		output.reset();
+		assertEquals(BatchCompiler.EXIT_USAGE, run("--threads", "0", directory.toString()));
+		assertTrue(output.toString().startsWith("Invalid thread count: 0"), output.toString());
+
+		output.reset();
+		assertEquals(BatchCompiler.EXIT_USAGE, run("--threads", "many", directory.toString()));
+		assertTrue(output.toString().startsWith("Invalid thread count: many"), output.toString());
+
+		// een bestand zonder .icss mag niet gecompileerd worden, dan zou fo.css geschreven worden
+		output.reset();
+		assertEquals(BatchCompiler.EXIT_USAGE, run(text.toString()));
+		assertFalse(Files.exists(directory.resolve("fo.css")));
+
+		for (String option : new String[] {"--threads", "--cache", "--cache-size"}) {
+			output.reset();
+			assertEquals(BatchCompiler.EXIT_USAGE, run(directory.toString(), option));
+			assertTrue(output.toString().startsWith("Missing value for " + option), output.toString());
+		}
+
+		assertEquals(BatchCompiler.EXIT_USAGE, run("--verbose", directory.toString()));
+	}
+}
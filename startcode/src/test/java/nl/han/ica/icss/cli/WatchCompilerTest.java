@@ -0,0 +1,117 @@
+package nl.han.ica.icss.cli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WatchCompilerTest {
+
+	@TempDir
+	Path directory;
+
+	String waitForFile(Path file, String expected) throws IOException, InterruptedException {
+		long deadline = System.currentTimeMillis() + 10_000;
+		String content = null;
+		while (System.currentTimeMillis() < deadline) {
+			if (Files.exists(file)) {
+				content = Files.readString(file, StandardCharsets.UTF_8);
+				if (content.equals(expected)) {
+					break;
+				}
+			}
+			Thread.sleep(20);
+		}
+		return content;
+	}
+
+	boolean waitForDeletion(Path file) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (Files.exists(file) && System.currentTimeMillis() < deadline) {
+			Thread.sleep(20);
+		}
+		return !Files.exists(file);
+	}
+
+	@Test
+	void testRecompilesChangedFiles() throws Exception {
+		Path source = directory.resolve("style.icss");
+		Files.writeString(source, "p { width: 10px; }\n");
+		Path nested = Files.createDirectories(directory.resolve("nested"));
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		WatchCompiler watcher = new WatchCompiler(List.of(directory), true, new PrintStream(output, true));
+		watcher.compileAll();
+		assertEquals("p {\n  width: 10px;\n}\n", Files.readString(directory.resolve("style.css")));
+
+		Thread thread = new Thread(() -> {
+			try {
+				watcher.watch();
+			} catch (IOException | InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		});
+		thread.start();
+		try {
+			Files.writeString(source, "p { width: 20px; }\n");
+			assertEquals("p {\n  width: 20px;\n}\n", waitForFile(directory.resolve("style.css"), "p {\n  width: 20px;\n}\n"));
+
+			Files.writeString(nested.resolve("other.icss"), "a { color: #ff0000; }\n");
+			assertEquals("a {\n  color: #ff0000;\n}\n", waitForFile(nested.resolve("other.css"), "a {\n  color: #ff0000;\n}\n"));
+
+			// a removed source takes its CSS along, and the source map of an earlier --source-map run
+			Files.writeString(nested.resolve("other.css.map"), "{}");
+			Files.delete(nested.resolve("other.icss"));
+			assertTrue(waitForDeletion(nested.resolve("other.css")));
+			assertTrue(waitForDeletion(nested.resolve("other.css.map")));
+		} finally {
+			watcher.close();
+			thread.join(5_000);
+		}
+		assertFalse(thread.isAlive());
+		assertTrue(output.toString().contains("Median change-to-CSS latency"));
+		// the latency runs from the event, so it includes the compile time
+		assertTrue(watcher.getMedianLatencyMillis() > 0);
+		assertTrue(watcher.getMedianCompileMillis() <= watcher.getMedianLatencyMillis());
+	}
+
+	@Test
+	void testRecompilesImportersOfChangedFiles() throws Exception {
+		Path variables = directory.resolve("variables.icss");
+		Files.writeString(variables, "Width := 10px;\n");
+		Path source = directory.resolve("style.icss");
+		Files.writeString(source, "@import \"variables.icss\";\np { width: Width; }\n");
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		WatchCompiler watcher = new WatchCompiler(List.of(directory), true, new PrintStream(output, true));
+		watcher.compileAll();
+		assertEquals("p {\n  width: 10px;\n}\n", Files.readString(directory.resolve("style.css")));
+		assertFalse(output.toString().contains("FAIL"), output.toString());
+
+		Thread thread = new Thread(() -> {
+			try {
+				watcher.watch();
+			} catch (IOException | InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		});
+		thread.start();
+		try {
+			// only the imported file changes, the importer is compiled again with its new value
+			Files.writeString(variables, "Width := 20px;\n");
+			assertEquals("p {\n  width: 20px;\n}\n", waitForFile(directory.resolve("style.css"), "p {\n  width: 20px;\n}\n"));
+		} finally {
+			watcher.close();
+			thread.join(5_000);
+		}
+		assertFalse(thread.isAlive());
+	}
+}
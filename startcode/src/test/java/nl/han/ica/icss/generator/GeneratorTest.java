@@ -0,0 +1,174 @@
+package nl.han.ica.icss.generator;
+
+import nl.han.ica.icss.CompilationResult;
+import nl.han.ica.icss.Compiler;
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.checker.Checker;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeneratorTest {
+
+	String compileTestFile(String resource) throws IOException {
+		ClassLoader classLoader = this.getClass().getClassLoader();
+		InputStream inputStream = classLoader.getResourceAsStream(resource);
+
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString(new String(inputStream.readAllBytes(), StandardCharsets.UTF_8));
+		assertTrue(pipeline.isParsed(), pipeline.getErrors().toString());
+		assertTrue(pipeline.check(), pipeline.getErrors().toString());
+		pipeline.transform();
+		return pipeline.generate();
+	}
+
+	@Test
+	void testGenerateLevel0() throws IOException {
+		assertEquals("p {\n" +
+				"  background-color: #ffffff;\n" +
+				"  width: 500px;\n" +
+				"}\n" +
+				"a {\n" +
+				"  color: #ff0000;\n" +
+				"}\n" +
+				"#menu {\n" +
+				"  width: 520px;\n" +
+				"}\n" +
+				".menu {\n" +
+				"  color: #000000;\n" +
+				"}\n", compileTestFile("level0.icss"));
+	}
+	@Test
+	void testGenerateLevel2() throws IOException {
+		assertEquals("p {\n" +
+				"  background-color: #ffffff;\n" +
+				"  width: 500px;\n" +
+				"}\n" +
+				"a {\n" +
+				"  color: #ff0000;\n" +
+				"}\n" +
+				"#menu {\n" +
+				"  width: 520px;\n" +
+				"}\n" +
+				".menu {\n" +
+				"  color: #000000;\n" +
+				"}\n", compileTestFile("level2.icss"));
+	}
+	@Test
+	void testGenerateLevel3() throws IOException {
+		assertEquals("p {\n" +
+				"  background-color: #ffffff;\n" +
+				"  width: 500px;\n" +
+				"  height: 20px;\n" +
+				"  color: #124532;\n" +
+				"  background-color: #000000;\n" +
+				"}\n" +
+				"a {\n" +
+				"  color: #ff0000;\n" +
+				"}\n" +
+				"#menu {\n" +
+				"  width: 520px;\n" +
+				"}\n" +
+				".menu {\n" +
+				"  color: #000000;\n" +
+				"  background-color: #ff0000;\n" +
+				"}\n", compileTestFile("level3.icss"));
+	}
+	@Test
+	void testSourceMapPointsIntoIfClauses() throws IOException {
+		Compiler compiler = new Compiler();
+		CompilationResult result = compiler.parse("p {\n  width: 10px;\n  if[TRUE] {\n    color: #ff0000;\n  }\n}\n");
+		assertTrue(compiler.check(result), result.getErrors().toString());
+		compiler.transform(result);
+
+		StringBuilder css = new StringBuilder();
+		SourceMapBuilder sourceMap = new SourceMapBuilder("test.css", "test.icss");
+		compiler.generate(result, css, sourceMap);
+
+		assertEquals("p {\n  width: 10px;\n  color: #ff0000;\n}\n", css.toString());
+		//The flattened color declaration still points at line 4 of the ICSS
+		assertEquals("AAAA;EACE;EAEE", sourceMap.getMappings());
+		assertEquals("{\"version\":3,\"file\":\"test.css\",\"sources\":[\"test.icss\"],\"names\":[],\"mappings\":\"AAAA;EACE;EAEE\"}\n",
+				sourceMap.toJson());
+	}
+	@Test
+	void testUntransformedOperationsKeepTheirMeaning() {
+		String[] expressions = {
+				"(2px + 3px) * 4",
+				"2px + 3px * 4",
+				"2px * 3 * 4",
+				"10px - (2px - 1px)",
+				"(10px - 2px) + 1px",
+				"10px - 2px + 1px",
+				"2px * (3 + 4 * 5)",
+		};
+		Compiler compiler = new Compiler();
+		for (String expression : expressions) {
+			//Checked without folding constants, like Generate right after Check in the GUI
+			AST ast = compiler.parse("p {\n  width: " + expression + ";\n}\n").getAST();
+			assertTrue(new Checker().check(ast).isEmpty());
+
+			String css = new Generator().generate(ast);
+			assertEquals(ast, compiler.parse(css).getAST(), css);
+		}
+
+		AST ast = compiler.parse("p {\n  width: (2px + 3px) * 4;\n}\n").getAST();
+		assertEquals("p {\n  width: (2px + 3px) * 4;\n}\n", new Generator().generate(ast));
+	}
+
+	@Test
+	void testStreamsToWriter() throws IOException {
+		Compiler compiler = new Compiler();
+		for (String resource : new String[] {"level0.icss", "level1.icss", "level2.icss", "level3.icss"}) {
+			try (InputStream inputStream = this.getClass().getClassLoader().getResourceAsStream(resource)) {
+				CompilationResult result = compiler.compile(new String(inputStream.readAllBytes(), StandardCharsets.UTF_8));
+				assertTrue(result.isTransformed(), result.getErrors().toString());
+				String expected = new Generator().generate(result.getAST());
+
+				StringWriter css = new StringWriter();
+				new Generator().generate(result.getAST(), css);
+				assertEquals(expected, css.toString(), resource);
+
+				//The source map does not change the CSS, and is the same for a Writer and a StringBuilder
+				StringWriter mapped = new StringWriter();
+				SourceMapBuilder sourceMap = new SourceMapBuilder("test.css", "test.icss");
+				new Generator().generate(result.getAST(), mapped, sourceMap);
+				assertEquals(expected, mapped.toString(), resource);
+
+				SourceMapBuilder built = new SourceMapBuilder("test.css", "test.icss");
+				new Generator().generate(result.getAST(), new StringBuilder(), built);
+				assertFalse(sourceMap.getMappings().isEmpty(), resource);
+				assertEquals(built.getMappings(), sourceMap.getMappings(), resource);
+			}
+		}
+	}
+
+	@Test
+	void testNumbersThroughWriter() throws IOException {
+		Compiler compiler = new Compiler();
+		CompilationResult result = compiler.compile("p { width: 3px - 120px; height: 2147483647px; opacity: 0; }");
+		assertEquals("p {\n  width: -117px;\n  height: 2147483647px;\n  opacity: 0;\n}\n", result.getCss());
+
+		//A Writer gets the digits one by one instead of through a String
+		StringWriter css = new StringWriter();
+		compiler.generate(result, css);
+		assertEquals(result.getCss(), css.toString());
+	}
+
+	@Test
+	void testSourceMapVlqEncoding() {
+		SourceMapBuilder sourceMap = new SourceMapBuilder("test.css", "test.icss");
+		sourceMap.addMapping(0, 16, 40, 3);
+		sourceMap.addMapping(0, 17, 39, 0);
+		sourceMap.addMapping(2, 0, 39, 0);
+
+		assertEquals("gBAwCG,CADH;;AAAA", sourceMap.getMappings());
+		assertThrows(IllegalArgumentException.class, () -> sourceMap.addMapping(1, 0, 0, 0));
+	}
+}
@@ -3,13 +3,18 @@ package nl.han.ica.icss.parser;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 
+import nl.han.ica.icss.CompilationResult;
+import nl.han.ica.icss.Compiler;
 import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.ast.literals.ColorLiteral;
+import nl.han.ica.icss.ast.selectors.IdSelector;
 
 import org.antlr.v4.runtime.*;
 import org.antlr.v4.runtime.misc.*;
 import org.antlr.v4.runtime.tree.*;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 
 class ParserTest {
 
@@ -53,6 +58,29 @@ class ParserTest {
 		return listener.getAST();
 	}
 
+	AST buildTestFile(String resource) throws IOException {
+
+		//Open test file to parse
+		ClassLoader classLoader = this.getClass().getClassLoader();
+
+		InputStream inputStream = classLoader.getResourceAsStream(resource);
+		ICSSLexer lexer = new ICSSLexer(CharStreams.fromStream(inputStream));
+		ICSSParser parser = new ICSSParser(new CommonTokenStream(lexer));
+		parser.setErrorHandler(new BailErrorStrategy());
+
+		//Build the AST during parsing, without a parse tree
+		ASTBuilder builder = new ASTBuilder();
+		parser.setBuildParseTree(false);
+		parser.addParseListener(builder);
+		try {
+			parser.stylesheet();
+		} catch(ParseCancellationException e) {
+			fail(e.toString());
+		}
+
+		return builder.getAST();
+	}
+
 	@Test
 	void testParseLevel0() throws IOException {
 
@@ -81,4 +109,57 @@ class ParserTest {
 		AST exp = Fixtures.uncheckedLevel3();
 		assertEquals(exp,sut);
 	}
+	@Test
+	void testBuildLevel0() throws IOException {
+		assertEquals(Fixtures.uncheckedLevel0(), buildTestFile("level0.icss"));
+	}
+	@Test
+	void testBuildLevel1() throws IOException {
+		assertEquals(Fixtures.uncheckedLevel1(), buildTestFile("level1.icss"));
+	}
+	@Test
+	void testBuildLevel2() throws IOException {
+		assertEquals(Fixtures.uncheckedLevel2(), buildTestFile("level2.icss"));
+	}
+	@Test
+	void testBuildLevel3() throws IOException {
+		assertEquals(Fixtures.uncheckedLevel3(), buildTestFile("level3.icss"));
+	}
+	@Test
+	void testSourcePositions() throws IOException {
+		String source;
+		try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream("level0.icss")) {
+			source = new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+		}
+
+		for (AST ast : new AST[] { parseTestFile("level0.icss"), buildTestFile("level0.icss") }) {
+			SourcePositions positions = ast.positions;
+			Stylerule rule = (Stylerule) ast.root.body.get(0);
+			Declaration width = (Declaration) rule.body.get(1);
+
+			assertEquals(3, positions.getLine(width.getPositionId()));
+			assertEquals(1, positions.getColumn(width.getPositionId()));
+			assertEquals("width: 500px;", source.substring(positions.getStart(width.getPositionId()), positions.getStop(width.getPositionId())));
+			assertEquals("width", source.substring(positions.getStart(width.property.getPositionId()), positions.getStop(width.property.getPositionId())));
+			assertTrue(source.substring(positions.getStart(rule.getPositionId()), positions.getStop(rule.getPositionId())).startsWith("p {"));
+			assertTrue(source.substring(positions.getStart(rule.getPositionId()), positions.getStop(rule.getPositionId())).endsWith("}"));
+			//Literals are shared and have no position of their own
+			assertFalse(positions.contains(width.expression));
+		}
+	}
+	@Test
+	void testHexIdSelectorIsNoColor() {
+		Compiler compiler = new Compiler();
+		CompilationResult result = compiler.parse("#deadbeef { color: #DEADBEEF; background-color: #10203080; }");
+		assertTrue(result.getErrors().isEmpty(), result.getErrors().toString());
+
+		Stylerule rule = (Stylerule) result.getAST().root.body.get(0);
+		assertEquals(new IdSelector("#deadbeef"), rule.selectors.get(0));
+		assertEquals(ColorLiteral.of(0x80102030), ((Declaration) rule.body.get(1)).expression);
+		assertEquals(0xef, ((ColorLiteral) ((Declaration) rule.body.get(0)).expression).alpha());
+		assertEquals("#deadbeef {\n  color: #deadbeef;\n  background-color: #10203080;\n}\n", compiler.compile("#deadbeef { color: #DEADBEEF; background-color: #10203080; }").getCss());
+
+		//An id ident that is not eight hex digits is no color
+		assertFalse(compiler.parse("p { color: #abc; }").getErrors().isEmpty());
+	}
 }
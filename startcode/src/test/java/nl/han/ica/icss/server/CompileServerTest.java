@@ -0,0 +1,99 @@
+package nl.han.ica.icss.server;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompileServerTest {
+
+	CompileServer server;
+	URI uri;
+
+	@BeforeEach
+	void startServer() throws IOException {
+		server = new CompileServer(0, 2);
+		server.start();
+		uri = URI.create("http://localhost:" + server.getPort() + CompileServer.PATH);
+	}
+
+	@AfterEach
+	void stopServer() {
+		server.close();
+	}
+
+	HttpResponse<String> post(String body) throws IOException, InterruptedException {
+		HttpRequest request = HttpRequest.newBuilder(uri).POST(HttpRequest.BodyPublishers.ofString(body)).build();
+		return HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofString());
+	}
+
+	@Test
+	void testCompilesValidInput() throws Exception {
+		HttpResponse<String> response = post("p { width: 10px; }");
+
+		assertEquals(200, response.statusCode());
+		assertEquals("p {\n  width: 10px;\n}\n", response.body());
+		assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith("text/css"));
+	}
+
+	@Test
+	void testReportsErrorsAsJson() throws Exception {
+		HttpResponse<String> syntax = post("p {\n  width: \"x\";\n}");
+		assertEquals(422, syntax.statusCode());
+		assertTrue(syntax.body().startsWith("{\"errors\":[{\"line\":2,\"column\":9,\"message\":\"Syntax error"), syntax.body());
+
+		HttpResponse<String> checked = post("p {\n  color: Undefined;\n}");
+		assertEquals(422, checked.statusCode());
+		assertEquals("{\"errors\":["
+				+ "{\"line\":2,\"column\":9,\"message\":\"Variable Undefined is not defined or this selector cannot access it\"},"
+				+ "{\"line\":2,\"column\":2,\"message\":\"Only color literals can be assigned to color property\"}]}\n",
+				checked.body());
+
+		HttpRequest get = HttpRequest.newBuilder(uri).GET().build();
+		assertEquals(405, HttpClient.newHttpClient().send(get, HttpResponse.BodyHandlers.discarding()).statusCode());
+	}
+
+	@Test
+	void testOverloadedServerAnswersBusy() throws Exception {
+		// one worker and one waiting compilation, so most of these requests find the server full
+		try (CompileServer busy = new CompileServer(0, 1, 1)) {
+			busy.start();
+			HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + busy.getPort() + CompileServer.PATH))
+					.POST(HttpRequest.BodyPublishers.ofString("p { width: 10px; }\n".repeat(50000))).build();
+			HttpClient client = HttpClient.newHttpClient();
+			List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+			for (int i = 0; i < 6; i++) {
+				responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+			}
+			List<Integer> statuses = new ArrayList<>();
+			for (CompletableFuture<HttpResponse<String>> response : responses) {
+				statuses.add(response.get().statusCode());
+			}
+
+			assertTrue(statuses.stream().allMatch(status -> status == 200 || status == 503), statuses.toString());
+			assertTrue(statuses.contains(200), statuses.toString());
+			assertTrue(statuses.contains(503), statuses.toString());
+		}
+	}
+
+	@Test
+	void testLoadTestReportsPercentiles() throws Exception {
+		LoadTest.Result result = new LoadTest(uri, "p { width: 10px; }".getBytes(StandardCharsets.UTF_8)).run(200, 50);
+
+		assertEquals(50, result.getCount());
+		assertEquals(0, result.getFailed());
+		assertTrue(result.getPercentileMillis(50) <= result.getPercentileMillis(99));
+		assertTrue(result.toString().contains("p99"));
+	}
+}
@@ -0,0 +1,62 @@
+package nl.han.ica.icss.transforms;
+
+import nl.han.ica.icss.CompilationResult;
+import nl.han.ica.icss.Compiler;
+import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.ast.literals.PercentageLiteral;
+import nl.han.ica.icss.ast.literals.PixelLiteral;
+import nl.han.ica.icss.checker.Checker;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConstantFolderTest {
+
+	AST fold(String input) {
+		CompilationResult result = new Compiler().parse(input);
+		assertTrue(result.isParsed(), result.getErrors().toString());
+		new Checker().check(result.getAST());
+		assertTrue(result.getAST().getErrors().isEmpty());
+		new ConstantFolder().apply(result.getAST());
+		return result.getAST();
+	}
+
+	Expression declarationValue(AST ast, int rule, int declaration) {
+		Stylerule stylerule = (Stylerule) ast.root.body.get(rule);
+		return ((Declaration) stylerule.body.get(declaration)).expression;
+	}
+
+	@Test
+	void testFoldLiteralOperations() {
+		AST ast = fold("p { width: 2 * 10px + 5px; height: 50% - 10%; }");
+
+		assertEquals(new PixelLiteral(25), declarationValue(ast, 0, 0));
+		assertEquals(new PercentageLiteral(40), declarationValue(ast, 0, 1));
+	}
+
+	@Test
+	void testFoldGlobalConstantsOnce() {
+		AST ast = fold("ParWidth := 500px; p { width: ParWidth + 20px; } a { width: ParWidth + 20px; }");
+
+		Expression first = declarationValue(ast, 1, 0);
+		assertEquals(new PixelLiteral(520), first);
+		// dezelfde operatie op dezelfde constante wordt één keer uitgerekend
+		assertSame(first, declarationValue(ast, 2, 0));
+	}
+
+	@Test
+	void testKeepRedefinedAndLocalVariables() {
+		AST ast = fold("W := 10px; p { width: W + 1px; } W := 20px; a { H := 5px; width: H + 1px; }");
+
+		assertTrue(declarationValue(ast, 1, 0) instanceof Operation);
+		assertTrue(declarationValue(ast, 3, 1) instanceof Operation);
+	}
+
+	@Test
+	void testFoldingKeepsOutput() {
+		String input = "W := 10px; p { width: W + 1px; } W := 20px; a { H := 5px; width: H * 2 + W; }";
+		CompilationResult folded = new Compiler().compile(input);
+
+		assertEquals("p {\n  width: 11px;\n}\na {\n  width: 30px;\n}\n", folded.getCss());
+	}
+}
@@ -0,0 +1,110 @@
+package nl.han.ica.icss.transforms;
+
+import nl.han.ica.icss.CompilationResult;
+import nl.han.ica.icss.Compiler;
+import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.checker.Checker;
+import nl.han.ica.icss.generator.Generator;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EvaluatorTest {
+
+	AST checkTestFile(String resource) throws IOException {
+		ClassLoader classLoader = this.getClass().getClassLoader();
+		try (InputStream inputStream = classLoader.getResourceAsStream(resource)) {
+			CompilationResult result = new Compiler().parse(new String(inputStream.readAllBytes(), StandardCharsets.UTF_8));
+			assertTrue(result.isParsed(), result.getErrors().toString());
+			new Checker().check(result.getAST());
+			assertTrue(result.getAST().getErrors().isEmpty());
+			return result.getAST();
+		}
+	}
+
+	@Test
+	void testEvaluateLeavesSourceUnchanged() throws IOException {
+		AST source = checkTestFile("level3.icss");
+		String before = source.toString();
+
+		new Evaluator().evaluate(source);
+
+		assertEquals(before, source.toString());
+		assertEquals(checkTestFile("level3.icss"), source);
+	}
+
+	@Test
+	void testEvaluateFlattensTheTree() throws IOException {
+		AST result = new Evaluator().evaluate(checkTestFile("level3.icss"));
+
+		for (ASTNode node : result.root.getChildren()) {
+			assertTrue(node instanceof Stylerule);
+			for (ASTNode declaration : ((Stylerule) node).body) {
+				assertTrue(declaration instanceof Declaration);
+				assertTrue(((Declaration) declaration).expression instanceof Literal);
+			}
+		}
+	}
+
+	@Test
+	void testRuleVariablesDoNotLeak() {
+		CompilationResult result = new Compiler().compile(
+				"W := 10px; p { W := 20px; width: W; } a { width: W; }");
+
+		assertEquals("p {\n  width: 20px;\n}\na {\n  width: 10px;\n}\n", result.getCss());
+	}
+
+	@Test
+	void testColorArithmetic() {
+		CompilationResult result = new Compiler().compile(
+				"Base := #804020; p { color: Base + #A0A0A0; background-color: Base - #900000 * 1; } a { color: #10203080 * 2; }");
+
+		assertTrue(result.getErrors().isEmpty(), result.getErrors().toString());
+		assertEquals("p {\n  color: #ffe0c0;\n  background-color: #004020;\n}\na {\n  color: #20406080;\n}\n", result.getCss());
+	}
+
+	@Test
+	void testRuleNestedInIfClauseKeepsOuterDeclarations() {
+		CompilationResult result = new Compiler().compile(
+				"p { if[TRUE] { a { width: 2px; } height: 3px; } width: 1px; }");
+
+		assertTrue(result.getErrors().isEmpty(), result.getErrors().toString());
+		assertEquals("p {\n  width: 1px;\n  height: 3px;\n}\n", result.getCss());
+	}
+
+	@Test
+	void testEvaluateRejectsUnboundAST() {
+		AST unbound = new AST(new Stylesheet());
+
+		assertThrows(IllegalStateException.class, () -> new Evaluator().evaluate(unbound));
+	}
+
+	@Test
+	void testEvaluateIsRepeatable() throws Exception {
+		AST source = checkTestFile("level3.icss");
+		String expected = new Generator().generate(new Evaluator().evaluate(source));
+
+		// dezelfde AST wordt door meerdere threads tegelijk geëvalueerd
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<String>> futures = new ArrayList<>();
+			for (int i = 0; i < 100; i++) {
+				futures.add(executor.submit(() -> new Generator().generate(new Evaluator().evaluate(source))));
+			}
+			for (Future<String> future : futures) {
+				assertEquals(expected, future.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+}